@@ -0,0 +1,335 @@
+a. Benchmarks.java
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Microbenchmarks for the hot paths of the listings in this directory:
+//   echo.*    BufferedReader.readLine + PrintWriter.println, as in Echoserver's `server`
+//   nio.*     SocketChannel read into a pooled direct buffer and newline scanning, as in
+//             NonBlockingServer / Connection.handleRead
+//   frame.*   FrameEncoder.encode and FrameDecoder.decode/read, with and without CRC32C
+//   weblog.*  LogRecord.parse against the String split Weblog does per line
+//   http.*    HttpRequest.read of a typical request head
+//
+// Each benchmark is warmed up, then measured for bench.iterations rounds of bench.time seconds,
+// and reported like JMH's throughput mode plus its gc profiler's normalised allocation
+// (bytes allocated per operation, from the per-thread allocation counter).
+//
+//   javac *.java && java -Xmx1g Benchmarks                 (all benchmarks)
+//   java -Dbench.iterations=10 -Dbench.time=2 Benchmarks frame   (names containing "frame")
+//
+// Run on an otherwise idle machine and compare runs on the same machine only.
+public class Benchmarks {
+
+    // One benchmark: setup once, then op() repeatedly. op() returns a value that is consumed so
+    // the JIT cannot discard the work.
+    interface Case {
+        long op() throws Exception;
+    }
+
+    private static final class Result {
+        final String name;
+        final double[] opsPerUs;
+        final double bytesPerOp;
+
+        Result(String name, double[] opsPerUs, double bytesPerOp) {
+            this.name = name;
+            this.opsPerUs = opsPerUs;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static volatile long sink;
+
+    private static final int WARMUP = Integer.getInteger("bench.warmup", 3);
+    private static final int ITERATIONS = Integer.getInteger("bench.iterations", 5);
+    private static final long TIME_NANOS = Long.getLong("bench.time", 1) * 1_000_000_000L;
+
+    public static void main(String[] args) throws Exception {
+        String filter = args.length > 0 ? args[0] : "";
+        List<Result> results = new ArrayList<>();
+
+        run(results, filter, "echo.readLinePrintln", echoReadLinePrintln());
+        run(results, filter, "nio.socketReadDirect", nioSocketRead());
+        run(results, filter, "nio.scanLines", nioScanLines());
+        run(results, filter, "frame.encode", frameEncode(false));
+        run(results, filter, "frame.encodeChecksum", frameEncode(true));
+        run(results, filter, "frame.decodeBuffer", frameDecode(false));
+        run(results, filter, "frame.decodeBufferChecksum", frameDecode(true));
+        run(results, filter, "frame.readStream", frameRead());
+        run(results, filter, "weblog.parseRecord", weblogParse());
+        run(results, filter, "weblog.splitString", weblogSplit());
+        run(results, filter, "http.readRequest", httpRead());
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, "%-28s %5s %4s %12s %10s %7s %12s%n",
+                "Benchmark", "Mode", "Cnt", "Score", "Error", "Units", "alloc B/op");
+        for (Result r : results) {
+            double mean = mean(r.opsPerUs);
+            System.out.printf(Locale.ROOT, "%-28s %5s %4d %12.3f %10s %7s %12.1f%n",
+                    r.name, "thrpt", r.opsPerUs.length, mean, "+- " + String.format(Locale.ROOT, "%.3f", error(r.opsPerUs, mean)),
+                    "ops/us", r.bytesPerOp);
+        }
+    }
+
+    private static void run(List<Result> results, String filter, String name, Case benchmark) throws Exception {
+        if (!name.contains(filter)) {
+            return;
+        }
+        System.out.println("# " + name);
+        for (int i = 0; i < WARMUP; i++) {
+            double score = iteration(benchmark, null);
+            System.out.printf(Locale.ROOT, "  warmup %d: %.3f ops/us%n", i + 1, score);
+        }
+        double[] scores = new double[ITERATIONS];
+        long[] allocation = new long[2]; // bytes, ops
+        for (int i = 0; i < ITERATIONS; i++) {
+            scores[i] = iteration(benchmark, allocation);
+            System.out.printf(Locale.ROOT, "  iteration %d: %.3f ops/us%n", i + 1, scores[i]);
+        }
+        results.add(new Result(name, scores, allocation[1] == 0 ? 0 : (double) allocation[0] / allocation[1]));
+    }
+
+    // Runs op() in batches until TIME_NANOS have passed; returns ops per microsecond
+    private static double iteration(Case benchmark, long[] allocation) throws Exception {
+        long thread = Thread.currentThread().getId();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(thread);
+        long ops = 0;
+        long consumed = 0;
+        long start = System.nanoTime();
+        long end = start + TIME_NANOS;
+        long now;
+        do {
+            for (int i = 0; i < 1024; i++) {
+                consumed += benchmark.op();
+            }
+            ops += 1024;
+            now = System.nanoTime();
+        } while (now < end);
+        long allocatedAfter = THREADS.getThreadAllocatedBytes(thread);
+        sink += consumed;
+        if (allocation != null) {
+            allocation[0] += allocatedAfter - allocatedBefore;
+            allocation[1] += ops;
+        }
+        return ops / ((now - start) / 1000.0);
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) {
+            sum += v;
+        }
+        return sum / values.length;
+    }
+
+    // Half-width of a ~99.9% confidence interval (3.3 standard errors), like JMH's error column
+    private static double error(double[] values, double mean) {
+        if (values.length < 2) {
+            return 0;
+        }
+        double squares = 0;
+        for (double v : values) {
+            squares += (v - mean) * (v - mean);
+        }
+        return 3.3 * Math.sqrt(squares / (values.length - 1) / values.length);
+    }
+
+    // ---- benchmarks ----
+
+    private static Case echoReadLinePrintln() {
+        byte[] line = "the quick brown fox jumps over the lazy dog 0123456789\n".getBytes(StandardCharsets.UTF_8);
+        BufferedReader in = new BufferedReader(new InputStreamReader(new RepeatingInputStream(line), StandardCharsets.UTF_8));
+        PrintWriter out = new PrintWriter(OutputStream.nullOutputStream(), true); // autoflush, as the server does
+        return () -> {
+            String received = in.readLine();
+            out.println(received);
+            return received.length();
+        };
+    }
+
+    private static Case nioSocketRead() throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+        SocketChannel client = SocketChannel.open(server.getLocalAddress());
+        SocketChannel accepted = server.accept();
+        server.close();
+        BufferPool pool = new BufferPool(8192, 16, true);
+        ByteBuffer request = ByteBuffer.allocateDirect(64);
+        while (request.hasRemaining()) {
+            request.put((byte) (request.remaining() == 1 ? '\n' : 'x'));
+        }
+        return () -> {
+            request.clear();
+            client.write(request);
+            ByteBuffer in = pool.acquire();
+            int lines = 0;
+            int total = 0;
+            while (total < 64) {
+                int n = accepted.read(in);
+                for (int i = total; i < total + n; i++) {
+                    if (in.get(i) == '\n') {
+                        lines++;
+                    }
+                }
+                total += n;
+            }
+            pool.release(in);
+            return lines;
+        };
+    }
+
+    private static Case nioScanLines() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(8192);
+        byte[] line = "GET /index.html HTTP/1.1\n".getBytes(StandardCharsets.US_ASCII);
+        while (buffer.remaining() >= line.length) {
+            buffer.put(line);
+        }
+        buffer.flip();
+        return () -> {
+            int lines = 0;
+            for (int i = buffer.position(); i < buffer.limit(); i++) {
+                if (buffer.get(i) == '\n') {
+                    lines++;
+                }
+            }
+            return lines;
+        };
+    }
+
+    private static Case frameEncode(boolean checksum) {
+        FrameEncoder encoder = new FrameEncoder(checksum);
+        ByteBuffer payload = ByteBuffer.allocateDirect(256);
+        ByteBuffer dst = ByteBuffer.allocateDirect(64 * 1024);
+        return () -> {
+            if (dst.remaining() < 300) {
+                dst.clear();
+            }
+            payload.clear();
+            encoder.encode(Frame.TYPE_DATA, payload, dst);
+            return dst.position();
+        };
+    }
+
+    private static Case frameDecode(boolean checksum) throws IOException {
+        FrameEncoder encoder = new FrameEncoder(checksum);
+        FrameDecoder decoder = new FrameDecoder();
+        Frame frame = new Frame();
+        ByteBuffer frames = ByteBuffer.allocateDirect(64 * 1024);
+        ByteBuffer payload = ByteBuffer.allocateDirect(256);
+        while (frames.remaining() >= Frame.encodedLength(256, checksum)) {
+            payload.clear();
+            encoder.encode(Frame.TYPE_DATA, payload, frames);
+        }
+        frames.flip();
+        return () -> {
+            if (!decoder.decode(frames, frame)) {
+                frames.rewind();
+                decoder.decode(frames, frame);
+            }
+            return frame.length();
+        };
+    }
+
+    private static Case frameRead() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        new FrameEncoder(false).write(out, Frame.TYPE_DATA, new byte[256], 0, 256);
+        FrameDecoder decoder = new FrameDecoder();
+        Frame frame = new Frame();
+        DataInputStream in = new DataInputStream(new RepeatingInputStream(bytes.toByteArray()));
+        return () -> {
+            decoder.read(in, frame);
+            return frame.length();
+        };
+    }
+
+    private static ByteBuffer weblogLines() throws IOException {
+        byte[] file = Files.readAllBytes(Paths.get(System.getProperty("bench.weblog", "Weblog.txt")));
+        return ByteBuffer.wrap(file);
+    }
+
+    private static Case weblogParse() throws IOException {
+        ByteBuffer file = weblogLines();
+        LogRecord record = new LogRecord();
+        int[] position = {0};
+        return () -> {
+            int start = position[0];
+            int end = start;
+            while (file.get(end) != '\n') {
+                end++;
+            }
+            position[0] = end + 1 < file.limit() ? end + 1 : 0;
+            return record.parse(file, start, end) ? record.status() + record.bytes() + record.pathHash() : 0;
+        };
+    }
+
+    private static Case weblogSplit() throws IOException {
+        String[] lines = new String(weblogLines().array(), StandardCharsets.ISO_8859_1).split("\n");
+        int[] next = {0};
+        return () -> {
+            String entry = lines[next[0]];
+            next[0] = next[0] + 1 < lines.length ? next[0] + 1 : 0;
+            // What Weblog's reader does with each line
+            int index = entry.indexOf(' ');
+            String ip = entry.substring(0, index);
+            String rest = entry.substring(index);
+            return ip.length() + rest.length();
+        };
+    }
+
+    private static Case httpRead() {
+        byte[] head = ("GET /index.html?lang=en HTTP/1.1\r\nHost: localhost:8080\r\nUser-Agent: bench/1.0\r\n"
+                + "Accept: text/html\r\nAccept-Encoding: gzip\r\nConnection: keep-alive\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        BufferedReader in = new BufferedReader(new InputStreamReader(new RepeatingInputStream(head), StandardCharsets.US_ASCII));
+        return () -> {
+            HttpRequest request = HttpRequest.read(in);
+            return request.getPath().length() + (request.isKeepAlive() ? 1 : 0);
+        };
+    }
+
+    // Endless input made of one chunk repeated, so stream benchmarks never hit end of input
+    private static final class RepeatingInputStream extends InputStream {
+        private final byte[] chunk;
+        private int position;
+
+        RepeatingInputStream(byte[] chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read() {
+            int b = chunk[position] & 0xFF;
+            position = (position + 1) % chunk.length;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            int n = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, n);
+            position = (position + n) % chunk.length;
+            return n;
+        }
+    }
+}
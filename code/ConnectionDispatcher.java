@@ -0,0 +1,245 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Decides which thread runs the handler for each accepted socket. Shared by the
+// thread-per-connection servers (binary, daytime, chat, secure) so they can all be switched
+// between the original one-thread-per-socket behaviour, a bounded pool and virtual threads.
+//
+// Pick the mode on the command line, e.g.
+//   java -Ddispatch.mode=pool -Ddispatch.threads=200 -Ddispatch.queue=1000 -Ddispatch.rejection=block LoggedServer
+//   java -Ddispatch.mode=virtual SimpleChatServer
+//
+// Every dispatcher records accepted, rejected and active connections, handler errors and how
+// long each handler ran into ServerMetrics under the server name it was created with.
+public class ConnectionDispatcher implements Closeable {
+
+    public enum Mode {
+        THREAD_PER_CONNECTION, // new Thread(...).start() for every socket, no upper bound
+        BOUNDED_POOL,          // fixed number of platform threads plus a bounded queue
+        VIRTUAL_THREADS        // one virtual thread per socket (JDK 21+), cheap enough for 50k+ idle clients
+    }
+
+    public enum RejectionPolicy {
+        CLOSE, // pool and queue full: close the new socket straight away
+        BLOCK  // pool and queue full: stall the accept loop, leaving clients in the kernel backlog
+    }
+
+    private final Mode mode;
+    private final RejectionPolicy rejectionPolicy;
+    private final ExecutorService executor;
+    private final BlockingQueue<Runnable> queue;
+    private final ServerMetrics metrics;
+    private ExecutorService writers; // created by the first writers() call
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private ConnectionDispatcher(Mode mode, int threads, int queueCapacity, RejectionPolicy rejectionPolicy, String server) {
+        this.rejectionPolicy = rejectionPolicy;
+        this.metrics = ServerMetrics.forServer(server);
+        switch (mode) {
+            case BOUNDED_POOL:
+                queue = new ArrayBlockingQueue<>(queueCapacity);
+                executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue,
+                        namedThreads("handler-"), new ThreadPoolExecutor.AbortPolicy());
+                this.mode = mode;
+                break;
+            case VIRTUAL_THREADS:
+                queue = null;
+                executor = newVirtualThreadExecutor();
+                // Older JDKs have no virtual threads: keep the original behaviour
+                this.mode = executor != null ? mode : Mode.THREAD_PER_CONNECTION;
+                break;
+            default:
+                queue = null;
+                executor = null;
+                this.mode = Mode.THREAD_PER_CONNECTION;
+        }
+    }
+
+    public static ConnectionDispatcher threadPerConnection(String server) {
+        return new ConnectionDispatcher(Mode.THREAD_PER_CONNECTION, 0, 0, RejectionPolicy.CLOSE, server);
+    }
+
+    public static ConnectionDispatcher boundedPool(int threads, int queueCapacity, RejectionPolicy rejectionPolicy, String server) {
+        if (threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("threads and queueCapacity must be at least 1");
+        }
+        return new ConnectionDispatcher(Mode.BOUNDED_POOL, threads, queueCapacity, rejectionPolicy, server);
+    }
+
+    public static ConnectionDispatcher virtualThreads(String server) {
+        return new ConnectionDispatcher(Mode.VIRTUAL_THREADS, 0, 0, RejectionPolicy.CLOSE, server);
+    }
+
+    // Builds a dispatcher from -Ddispatch.* system properties; defaults to thread-per-connection.
+    // server names the dispatcher's metrics, e.g. "chat".
+    public static ConnectionDispatcher fromSystemProperties(String server) {
+        String mode = System.getProperty("dispatch.mode", "thread");
+        switch (mode.toLowerCase()) {
+            case "pool":
+                int threads = Integer.getInteger("dispatch.threads", Runtime.getRuntime().availableProcessors() * 16);
+                int queueCapacity = Integer.getInteger("dispatch.queue", threads * 4);
+                RejectionPolicy policy = RejectionPolicy.valueOf(
+                        System.getProperty("dispatch.rejection", "close").toUpperCase());
+                return boundedPool(threads, queueCapacity, policy, server);
+            case "virtual":
+                return virtualThreads(server);
+            case "thread":
+                return threadPerConnection(server);
+            default:
+                throw new IllegalArgumentException("Unknown dispatch.mode: " + mode);
+        }
+    }
+
+    // Runs handler for the given socket. Returns false if the connection was rejected,
+    // in which case the socket has already been closed.
+    public boolean dispatch(Socket socket, Runnable handler) {
+        Runnable task = () -> {
+            queued.decrementAndGet();
+            active.incrementAndGet();
+            metrics.opened();
+            long start = System.nanoTime();
+            try {
+                handler.run();
+            } catch (RuntimeException | Error e) {
+                metrics.error();
+                throw e;
+            } finally {
+                metrics.handled(start);
+                metrics.closed();
+                active.decrementAndGet();
+            }
+        };
+
+        queued.incrementAndGet();
+        dispatched.increment();
+        metrics.accepted();
+        try {
+            if (executor == null) {
+                new Thread(task).start();
+            } else {
+                executor.execute(task);
+            }
+            return true;
+        } catch (RejectedExecutionException e) {
+            if (rejectionPolicy == RejectionPolicy.BLOCK && queue != null && !executor.isShutdown()) {
+                try {
+                    queue.put(task);
+                    return true;
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            queued.decrementAndGet();
+            rejected.increment();
+            metrics.rejected();
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+            return false;
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    // Connections accepted but not yet picked up by a handler thread
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    // Handlers currently running
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public long getDispatchedCount() {
+        return dispatched.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Runs short output tasks for the dispatched sockets, such as draining a chat client's
+    // outbox, so a client costs no writer thread of its own. In virtual mode each task gets a
+    // virtual thread. Otherwise they share -Ddispatch.writers daemon threads (default twice the
+    // CPU count), kept apart from the handlers so writers cannot be starved by blocked readers.
+    public synchronized Executor writers() {
+        if (writers == null) {
+            if (mode == Mode.VIRTUAL_THREADS) {
+                writers = executor;
+            } else {
+                int threads = Integer.getInteger("dispatch.writers", Runtime.getRuntime().availableProcessors() * 2);
+                ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(), daemon(namedThreads("writer-")));
+                pool.allowCoreThreadTimeOut(true);
+                writers = pool;
+            }
+        }
+        return writers;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionDispatcher[mode=" + mode + ", queued=" + getQueuedCount() + ", active=" + getActiveCount()
+                + ", dispatched=" + getDispatchedCount() + ", rejected=" + getRejectedCount() + "]";
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+        synchronized (this) {
+            if (writers != null) {
+                writers.shutdown();
+            }
+        }
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> new Thread(runnable, prefix + count.incrementAndGet());
+    }
+
+    private static ThreadFactory daemon(ThreadFactory factory) {
+        return runnable -> {
+            Thread thread = factory.newThread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // Looked up reflectively so the servers still compile and run on JDKs before 21
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Virtual threads are not available on this JDK, using a thread per connection");
+            return null;
+        }
+    }
+}
@@ -3,6 +3,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
 import java.util.Scanner;
@@ -11,6 +12,13 @@ public class client {
 
 	public static void main (String [] args) {
 		try {
+			if(args.length>0 && args[0].equalsIgnoreCase("load")) {	//headless load-generator mode: java client load [host [port]]
+				String host=args.length>1 ? args[1] : "localhost";
+				int port=args.length>2 ? Integer.parseInt(args[2]) : 4567;
+				new LoadGenerator(new InetSocketAddress(host, port)).run();	//settings come from -Dload.* (see LoadGenerator)
+				return;
+			}
+			
 			System.out.println("Waiting for connection...");
 			Socket clientSocket=new Socket("localhost", 4567);	//client needs server's ip/address and port to connect
 			System.out.println("Connected to server...");
@@ -37,6 +45,8 @@ public class client {
 		} catch (IOException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
 		
 		
@@ -12,9 +12,11 @@ public class server {
 		
 		try {
 			
-			ServerSocket serverSocket=new ServerSocket(4567);	//server listening at port 4567
+			SocketProfile profile=SocketProfile.fromSystemProperties();	//socket options from -Dsocket.config / -Dsocket.profile
+			ServerSocket serverSocket=profile.openServerSocket(4567);	//server listening at port 4567
 			System.out.println("Waiting for connection...");	
 			Socket clientSocket=serverSocket.accept();			//serverSocket will block this call until it receives a request from a client
+			profile.configure(clientSocket);
 			System.out.println("Connection established...");	//when request is received the accept method will return a socket class instance.
 			
 			BufferedReader br=new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
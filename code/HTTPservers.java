@@ -1,10 +1,13 @@
 1. SingleFileServer.java
 
 import java.io.*;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 
 public class SingleFileServer {
     public static void main(String[] args) {
@@ -12,34 +15,42 @@ public class SingleFileServer {
         String fileUrl = "https://raw.githubusercontent.com/Sharatmaharjan/Np/main/code/index.html"; // Raw file URL from GitHub
 
         try {
-            // Fetch the HTML content from the URL
-            String content = fetchContentFromUrl(fileUrl);
-            
-            try (ServerSocket serverSocket = new ServerSocket(port)) {
+            // With a directory argument, serve that directory from local disk;
+            // otherwise serve the single page fetched from the URL
+            HttpConnection.Handler handler;
+            if (args.length > 0) {
+                StaticFiles files = new StaticFiles(Paths.get(args[0]));
+                handler = files::serve;
+            } else {
+                // Fetch the HTML content from the URL and encode the whole response once,
+                // in a keep-alive and a close variant. Content-Length must count bytes, not chars.
+                byte[] body = fetchContentFromUrl(fileUrl).getBytes(StandardCharsets.UTF_8);
+                ByteBuffer keepAliveResponse = encodeResponse(body, true);
+                ByteBuffer closeResponse = encodeResponse(body, false);
+                handler = (request, channel, keepAlive) -> {
+                    if (request.getMethod().equals("GET")) {
+                        StaticFiles.writeFully(channel, (keepAlive ? keepAliveResponse : closeResponse).duplicate());
+                    } else {
+                        StaticFiles.sendError(channel, 405, "Method Not Allowed", request, keepAlive);
+                    }
+                };
+            }
+            ConnectionDispatcher dispatcher = ConnectionDispatcher.fromSystemProperties("singlefile");
+
+            // A ServerSocketChannel (in blocking mode) gives each client a SocketChannel,
+            // which FileChannel.transferTo can send file bytes to without copying them
+            SocketProfile profile = SocketProfile.fromSystemProperties();
+            try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+                profile.bind(serverChannel, new InetSocketAddress(port), 0);
                 System.out.println("SingleFileServer is listening on port " + port);
 
                 while (true) {
-                    try (Socket socket = serverSocket.accept()) {
-                        System.out.println("New client connected");
-
-                        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-                        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-
-                        // Read the HTTP request (only the first line for simplicity)
-                        String requestLine = in.readLine();
-                        System.out.println("Request: " + requestLine);
-
-                        if (requestLine != null && requestLine.startsWith("GET")) {
-                            // Send HTTP response
-                            out.println("HTTP/1.1 200 OK");
-                            out.println("Content-Type: text/html");
-                            out.println("Content-Length: " + content.length());
-                            out.println();
-                            out.println(content);
-                        }
-
-                        socket.close();
-                    }
+                    SocketChannel channel = serverChannel.accept();
+                    profile.configure(channel);
+                    System.out.println("New client connected");
+
+                    // The connection stays open for as many requests as the client sends
+                    dispatcher.dispatch(channel.socket(), new HttpConnection(channel, handler));
                 }
             }
         } catch (IOException e) {
@@ -47,6 +58,15 @@ public class SingleFileServer {
         }
     }
 
+    private static ByteBuffer encodeResponse(byte[] body, boolean keepAlive) {
+        byte[] header = ("HTTP/1.1 200 OK\r\n"
+                + "Content-Type: text/html; charset=utf-8\r\n"
+                + "Content-Length: " + body.length + "\r\n"
+                + "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n"
+                + "\r\n").getBytes(StandardCharsets.US_ASCII);
+        return ByteBuffer.allocateDirect(header.length + body.length).put(header).put(body).flip();
+    }
+
     private static String fetchContentFromUrl(String fileUrl) throws IOException {
         StringBuilder content = new StringBuilder();
         URL url = new URL(fileUrl);
@@ -64,42 +84,55 @@ public class SingleFileServer {
 2. Redirector.java
 
 import java.io.*;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
 
 public class Redirector {
     public static void main(String[] args) {
         int port = 8080;
         String redirectUrl = "http://example.com";
 
-        try (ServerSocket serverSocket = new ServerSocket(port)) {
+        // The redirect never changes, so encode it once for each Connection header value
+        ByteBuffer keepAliveResponse = encodeRedirect(redirectUrl, true);
+        ByteBuffer closeResponse = encodeRedirect(redirectUrl, false);
+        HttpConnection.Handler handler = (request, channel, keepAlive) -> {
+            if (request.getMethod().equals("GET")) {
+                // Send HTTP redirect response
+                StaticFiles.writeFully(channel, (keepAlive ? keepAliveResponse : closeResponse).duplicate());
+            } else {
+                StaticFiles.sendError(channel, 405, "Method Not Allowed", request, keepAlive);
+            }
+        };
+        ConnectionDispatcher dispatcher = ConnectionDispatcher.fromSystemProperties("redirector");
+
+        SocketProfile profile = SocketProfile.fromSystemProperties();
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            profile.bind(serverChannel, new InetSocketAddress(port), 0);
             System.out.println("Redirector is listening on port " + port);
 
             while (true) {
-                try (Socket socket = serverSocket.accept()) {
-                    System.out.println("New client connected");
+                SocketChannel channel = serverChannel.accept();
+                profile.configure(channel);
+                System.out.println("New client connected");
 
-                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-                    PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-
-                    // Read the HTTP request (only the first line for simplicity)
-                    String requestLine = in.readLine();
-                    System.out.println("Request: " + requestLine);
-
-                    if (requestLine != null && requestLine.startsWith("GET")) {
-                        // Send HTTP redirect response
-                        out.println("HTTP/1.1 302 Found");
-                        out.println("Location: " + redirectUrl);
-                        out.println();
-                    }
-
-                    socket.close();
-                }
+                dispatcher.dispatch(channel.socket(), new HttpConnection(channel, handler));
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    private static ByteBuffer encodeRedirect(String redirectUrl, boolean keepAlive) {
+        byte[] response = ("HTTP/1.1 302 Found\r\n"
+                + "Location: " + redirectUrl + "\r\n"
+                + "Content-Length: 0\r\n"
+                + "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n"
+                + "\r\n").getBytes(StandardCharsets.US_ASCII);
+        return ByteBuffer.allocateDirect(response.length).put(response).flip();
+    }
 }
 
 3. FullFledgedHttpServer.java
@@ -111,39 +144,724 @@ import com.sun.net.httpserver.HttpExchange;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
 
+// Tuning knobs, e.g.
+//   java -Dhttp.executor=fixed -Dhttp.threads=64 -Dhttp.backlog=4096 FullFledgedHttpServer
+// http.executor is one of: fixed (default), workstealing, virtual, dispatcher
+//
+// GET /metrics returns every metric in this process (see MetricsRegistry) in Prometheus format.
 public class FullFledgedHttpServer {
+    // Requests in flight show up as active connections, and handler latency is per request
+    static final ServerMetrics METRICS = ServerMetrics.forServer("http");
+
     public static void main(String[] args) throws IOException {
         int port = 8080;
-        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
-        server.createContext("/", new RootHandler());
-        server.createContext("/hello", new HelloHandler());
-        server.setExecutor(null); // creates a default executor
+        // 0 would mean the small system default. HttpServer only exposes the backlog, so that is
+        // the one socket.* profile setting that applies here.
+        int backlog = SocketProfile.fromSystemProperties().backlog(Integer.getInteger("http.backlog", 1024));
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), backlog);
+
+        // One context hands every request to the router, which does an exact-match lookup
+        HttpHandler root = new RootHandler();
+        Router router = new Router(root);
+        router.add("/", root);
+        router.add("/hello", new HelloHandler());
+        server.createContext("/", router);
+        server.createContext("/metrics", new MetricsHandler(MetricsRegistry.shared()));
+
+        server.setExecutor(createExecutor(System.getProperty("http.executor", "fixed")));
         System.out.println("FullFledgedHttpServer is listening on port " + port);
         server.start();
     }
 
+    // With a null executor every handler runs on the server's single dispatcher thread
+    static ExecutorService createExecutor(String mode) {
+        int threads = Integer.getInteger("http.threads", Runtime.getRuntime().availableProcessors() * 2);
+        switch (mode) {
+            case "fixed":
+                return Executors.newFixedThreadPool(threads);
+            case "workstealing":
+                return Executors.newWorkStealingPool(threads);
+            case "virtual":
+                ExecutorService virtual = ConnectionDispatcher.newVirtualThreadExecutor();
+                return virtual != null ? virtual : Executors.newFixedThreadPool(threads);
+            case "dispatcher":
+                return null;
+            default:
+                throw new IllegalArgumentException("Unknown http.executor: " + mode);
+        }
+    }
+
+    // Sends a body encoded once at startup; Content-Length is its byte length
+    static void sendFixed(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+        METRICS.wrote(body.length);
+    }
+
+    // Exact path lookup in a map filled at startup. A hit costs one hash lookup on the path
+    // string the request already carries; misses fall back to the longest registered prefix.
+    // Also times every request and counts responses by status class (1xx to 5xx).
+    static class Router implements HttpHandler {
+        private final Map<String, HttpHandler> routes = new HashMap<>();
+        private final HttpHandler fallback;
+        private final LongAdder[] responses = new LongAdder[5];
+
+        Router(HttpHandler fallback) {
+            this.fallback = fallback;
+            for (int i = 0; i < responses.length; i++) {
+                responses[i] = MetricsRegistry.shared().counter("http_responses_total", "HTTP responses sent, by status class",
+                        "server", "http", "status", (i + 1) + "xx");
+            }
+        }
+
+        void add(String path, HttpHandler handler) {
+            routes.put(path, handler);
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getRawPath();
+            HttpHandler handler = routes.get(path);
+            while (handler == null && path.length() > 1) {
+                path = path.substring(0, Math.max(1, path.lastIndexOf('/')));
+                handler = routes.get(path);
+            }
+
+            long start = System.nanoTime();
+            METRICS.opened();
+            try {
+                (handler != null ? handler : fallback).handle(exchange);
+            } catch (IOException | RuntimeException e) {
+                METRICS.error();
+                throw e;
+            } finally {
+                int status = exchange.getResponseCode();
+                if (status >= 100 && status < 600) {
+                    responses[status / 100 - 1].increment();
+                }
+                if (status >= 500) {
+                    METRICS.error();
+                }
+                METRICS.handled(start);
+                METRICS.closed();
+            }
+        }
+    }
+
     static class RootHandler implements HttpHandler {
+        private static final byte[] RESPONSE = "Welcome to the Full-Fledged HTTP Server!".getBytes(StandardCharsets.UTF_8);
+
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            String response = "Welcome to the Full-Fledged HTTP Server!";
-            exchange.sendResponseHeaders(200, response.length());
-            OutputStream os = exchange.getResponseBody();
-            os.write(response.getBytes());
-            os.close();
+            sendFixed(exchange, 200, "text/plain; charset=utf-8", RESPONSE);
         }
     }
 
     static class HelloHandler implements HttpHandler {
+        private static final byte[] RESPONSE = "Hello, world!".getBytes(StandardCharsets.UTF_8);
+
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            String response = "Hello, world!";
-            exchange.sendResponseHeaders(200, response.length());
-            OutputStream os = exchange.getResponseBody();
-            os.write(response.getBytes());
-            os.close();
+            sendFixed(exchange, 200, "text/plain; charset=utf-8", RESPONSE);
         }
     }
 }
 
 
+4. StaticFiles.java
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Serves files under a root directory. Small files are kept in memory as read-only direct
+// buffers and written straight from there; larger files are sent with FileChannel.transferTo,
+// which the OS turns into sendfile(), so their bytes never pass through the Java heap.
+// Supports HEAD, ETag / If-None-Match (304) and single byte ranges (206).
+public class StaticFiles {
+    static final int CACHE_FILE_LIMIT = 64 * 1024;        // files up to this size are cached
+    static final long CACHE_TOTAL_LIMIT = 64 * 1024 * 1024; // total bytes kept in the cache
+
+    private static final Map<String, String> CONTENT_TYPES = Map.ofEntries(
+            Map.entry("html", "text/html; charset=utf-8"),
+            Map.entry("htm", "text/html; charset=utf-8"),
+            Map.entry("txt", "text/plain; charset=utf-8"),
+            Map.entry("css", "text/css"),
+            Map.entry("js", "application/javascript"),
+            Map.entry("json", "application/json"),
+            Map.entry("png", "image/png"),
+            Map.entry("jpg", "image/jpeg"),
+            Map.entry("jpeg", "image/jpeg"),
+            Map.entry("gif", "image/gif"),
+            Map.entry("svg", "image/svg+xml"),
+            Map.entry("ico", "image/x-icon"),
+            Map.entry("pdf", "application/pdf"));
+
+    private final Path root;
+    private final Map<Path, CachedFile> cache = new ConcurrentHashMap<>();
+    private final AtomicLong cachedBytes = new AtomicLong();
+
+    public StaticFiles(Path root) throws IOException {
+        this.root = root.toRealPath();
+    }
+
+    public void serve(HttpRequest request, SocketChannel channel, boolean keepAlive) throws IOException {
+        String method = request.getMethod();
+        if (!method.equals("GET") && !method.equals("HEAD")) {
+            sendError(channel, 405, "Method Not Allowed", request, keepAlive);
+            return;
+        }
+
+        Path file;
+        try {
+            file = resolve(request.getPath());
+        } catch (IllegalArgumentException e) {
+            // A bad %-escape, or a name the file system cannot represent (InvalidPathException)
+            sendError(channel, 400, "Bad Request", request, keepAlive);
+            return;
+        }
+        if (file == null || !Files.isRegularFile(file)) {
+            sendError(channel, 404, "Not Found", request, keepAlive);
+            return;
+        }
+
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        String etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(modified) + "\"";
+
+        // The client already has these bytes
+        String ifNoneMatch = request.getHeader("if-none-match");
+        if (ifNoneMatch != null && (ifNoneMatch.equals("*") || ifNoneMatch.contains(etag))) {
+            StringBuilder header = statusLine(304, "Not Modified");
+            header.append("ETag: ").append(etag).append("\r\n");
+            writeFully(channel, endHeader(header, keepAlive));
+            return;
+        }
+
+        // Work out which bytes to send: all of them, or a single requested range
+        long start = 0;
+        long end = size - 1;
+        boolean partial = false;
+        String range = request.getHeader("range");
+        if (range != null && range.startsWith("bytes=") && range.indexOf(',') < 0 && size > 0) {
+            long[] bounds = parseRange(range.substring(6).trim(), size);
+            if (bounds == null) {
+                StringBuilder header = statusLine(416, "Range Not Satisfiable");
+                header.append("Content-Range: bytes */").append(size).append("\r\n");
+                header.append("Content-Length: 0\r\n");
+                writeFully(channel, endHeader(header, keepAlive));
+                return;
+            }
+            start = bounds[0];
+            end = bounds[1];
+            partial = true;
+        }
+        long length = end - start + 1;
+
+        StringBuilder header = partial ? statusLine(206, "Partial Content") : statusLine(200, "OK");
+        header.append("Content-Type: ").append(contentType(file)).append("\r\n");
+        header.append("Content-Length: ").append(length).append("\r\n");
+        header.append("ETag: ").append(etag).append("\r\n");
+        header.append("Accept-Ranges: bytes\r\n");
+        if (partial) {
+            header.append("Content-Range: bytes ").append(start).append('-').append(end)
+                    .append('/').append(size).append("\r\n");
+        }
+        ByteBuffer head = endHeader(header, keepAlive);
+
+        if (method.equals("HEAD") || length == 0) {
+            writeFully(channel, head);
+            return;
+        }
+
+        CachedFile cached = cached(file, size, modified);
+        if (cached != null) {
+            // Headers and body go out in one gathering write from the shared buffer
+            ByteBuffer body = cached.body.duplicate();
+            body.position((int) start).limit((int) (end + 1));
+            ByteBuffer[] buffers = {head, body};
+            while (body.hasRemaining()) {
+                channel.write(buffers);
+            }
+        } else {
+            writeFully(channel, head);
+            try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long position = start;
+                long remaining = length;
+                while (remaining > 0) {
+                    long sent = fileChannel.transferTo(position, remaining, channel);
+                    if (sent <= 0) {
+                        break; // file shrank underneath us
+                    }
+                    position += sent;
+                    remaining -= sent;
+                }
+            }
+        }
+    }
+
+    // Maps the request path to a file under root, or null if it would escape root.
+    // IllegalArgumentException if the path cannot be decoded or names no valid file.
+    private Path resolve(String path) {
+        String decoded = decodePath(path);
+        if (decoded.endsWith("/")) {
+            decoded += "index.html";
+        }
+        Path file = root.resolve(decoded.substring(1)).normalize();
+        return file.startsWith(root) ? file : null;
+    }
+
+    // Percent-decodes a URL path as UTF-8. Unlike URLDecoder, which decodes form data, a '+'
+    // stays a '+': only "%20" is a space in a path. The head was read as ISO-8859-1, so any
+    // unescaped non-ASCII chars are the raw bytes the client sent and are decoded with the rest.
+    static String decodePath(String path) {
+        byte[] bytes = new byte[path.length()];
+        int n = 0;
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c != '%') {
+                if (c > 0xFF) {
+                    throw new IllegalArgumentException("Not a byte in path: " + path);
+                }
+                bytes[n++] = (byte) c;
+                continue;
+            }
+            int high = i + 2 < path.length() ? Character.digit(path.charAt(i + 1), 16) : -1;
+            int low = high >= 0 ? Character.digit(path.charAt(i + 2), 16) : -1;
+            if (low < 0) {
+                throw new IllegalArgumentException("Bad escape in path: " + path);
+            }
+            bytes[n++] = (byte) (high << 4 | low);
+            i += 2;
+        }
+        return new String(bytes, 0, n, StandardCharsets.UTF_8);
+    }
+
+    private CachedFile cached(Path file, long size, long modified) throws IOException {
+        if (size > CACHE_FILE_LIMIT) {
+            return null;
+        }
+        CachedFile cached = cache.get(file);
+        if (cached != null && cached.size == size && cached.modified == modified) {
+            return cached;
+        }
+        if (cached == null && cachedBytes.get() + size > CACHE_TOTAL_LIMIT) {
+            return null;
+        }
+
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length != size) {
+            return null; // changed while reading; serve from disk this time
+        }
+        ByteBuffer body = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip().asReadOnlyBuffer();
+        CachedFile fresh = new CachedFile(size, modified, body);
+        CachedFile previous = cache.put(file, fresh);
+        cachedBytes.addAndGet(size - (previous == null ? 0 : previous.size));
+        return fresh;
+    }
+
+    // "start-end", "start-" or "-suffixLength"; null if the range cannot be satisfied
+    static long[] parseRange(String spec, long size) {
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? size - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), size - 1);
+            }
+            return start <= end && start < size ? new long[] {start, end} : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String contentType(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String type = dot < 0 ? null : CONTENT_TYPES.get(name.substring(dot + 1).toLowerCase());
+        return type != null ? type : "application/octet-stream";
+    }
+
+    // request is null when the request could not be read at all
+    static void sendError(SocketChannel channel, int status, String reason, HttpRequest request, boolean keepAlive) throws IOException {
+        byte[] body = (status + " " + reason + "\n").getBytes(StandardCharsets.US_ASCII);
+        StringBuilder header = statusLine(status, reason);
+        header.append("Content-Type: text/plain\r\n");
+        header.append("Content-Length: ").append(body.length).append("\r\n");
+        writeFully(channel, endHeader(header, keepAlive));
+        if (request == null || !request.getMethod().equals("HEAD")) {
+            writeFully(channel, ByteBuffer.wrap(body));
+        }
+    }
+
+    private static StringBuilder statusLine(int status, String reason) {
+        return new StringBuilder(256).append("HTTP/1.1 ").append(status).append(' ').append(reason).append("\r\n");
+    }
+
+    private static ByteBuffer endHeader(StringBuilder header, boolean keepAlive) {
+        header.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n");
+        header.append("\r\n");
+        return ByteBuffer.wrap(header.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    static void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static final class CachedFile {
+        final long size;
+        final long modified;
+        final ByteBuffer body; // read-only, shared by every response; use duplicate()
+
+        CachedFile(long size, long modified, ByteBuffer body) {
+            this.size = size;
+            this.modified = modified;
+            this.body = body;
+        }
+    }
+}
+
+
+5. HttpRequest.java
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+// Request line plus headers of one HTTP request. Header names are stored lower-case.
+public class HttpRequest {
+    // Limits on a request head; beyond them read() throws HeaderTooLargeException, answered with 431
+    static final int MAX_LINE_LENGTH = Integer.getInteger("http.maxHeaderLine", 8192);
+    static final int MAX_HEAD_SIZE = Integer.getInteger("http.maxHeaderSize", 64 * 1024);
+    static final int MAX_HEADERS = Integer.getInteger("http.maxHeaders", 100);
+
+    private final String requestLine;
+    private final String method;
+    private final String target;
+    private final String version;
+    private final Map<String, String> headers;
+
+    private HttpRequest(String requestLine, String method, String target, String version, Map<String, String> headers) {
+        this.requestLine = requestLine;
+        this.method = method;
+        this.target = target;
+        this.version = version;
+        this.headers = headers;
+    }
+
+    // A request the server will not process; HttpConnection answers with status and closes
+    public static class BadRequestException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+        private final String reason;
+
+        BadRequestException(String message) {
+            this(400, "Bad Request", message);
+        }
+
+        BadRequestException(int status, String reason, String message) {
+            super(message);
+            this.status = status;
+            this.reason = reason;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+    }
+
+    public static final class HeaderTooLargeException extends BadRequestException {
+        private static final long serialVersionUID = 1L;
+
+        HeaderTooLargeException(String message) {
+            super(431, "Request Header Fields Too Large", message);
+        }
+    }
+
+    // Reads one request head (up to the blank line). Returns null if the client closed the
+    // connection before sending a request line. A line longer than MAX_LINE_LENGTH, a head
+    // larger than MAX_HEAD_SIZE or more than MAX_HEADERS fields is refused before it is
+    // buffered, so a client cannot make the server hold an unbounded head in memory.
+    //
+    // The head is scanned a chunk at a time (per-char read() is several times slower than
+    // readLine()); at the blank line the reader is rewound to just past it, so a pipelined
+    // request or a body that arrived in the same chunk stays in the reader. Blank lines before
+    // the request line are skipped (RFC 9112 section 2.2).
+    public static HttpRequest read(BufferedReader in) throws IOException {
+        char[] chunk = new char[128];
+        StringBuilder line = new StringBuilder(0); // only grows for a line split across chunks
+        String requestLine = null;
+        Map<String, String> headers = new HashMap<>();
+        int consumed = 0; // head chars in the chunks before this one
+        while (true) {
+            in.mark(chunk.length);
+            int n = in.read(chunk, 0, chunk.length);
+            if (n < 0) {
+                // End of stream: whatever was read is the whole head
+                if (line.length() > 0) {
+                    requestLine = addLine(requestLine, headers, line.toString());
+                }
+                return requestLine == null ? null : parse(requestLine, headers);
+            }
+            int start = 0;
+            for (int i = 0; i < n; i++) {
+                if (chunk[i] != '\n') {
+                    continue;
+                }
+                if (consumed + i >= MAX_HEAD_SIZE) {
+                    throw new HeaderTooLargeException("Request head larger than " + MAX_HEAD_SIZE);
+                }
+                int end = i > start && chunk[i - 1] == '\r' ? i - 1 : i;
+                String text;
+                if (line.length() == 0) {
+                    // The usual case: the whole line is in this chunk
+                    if (end - start > MAX_LINE_LENGTH) {
+                        throw new HeaderTooLargeException("Header line longer than " + MAX_LINE_LENGTH);
+                    }
+                    text = new String(chunk, start, end - start);
+                } else {
+                    appendBounded(line, chunk, start, end);
+                    if (end == i && line.charAt(line.length() - 1) == '\r') {
+                        line.setLength(line.length() - 1); // the '\r' ended the previous chunk
+                    }
+                    text = line.toString();
+                    line.setLength(0);
+                }
+                start = i + 1;
+                if (text.isEmpty()) {
+                    if (requestLine == null) {
+                        continue;
+                    }
+                    in.reset();
+                    in.skip(start);
+                    return parse(requestLine, headers);
+                }
+                requestLine = addLine(requestLine, headers, text);
+            }
+            appendBounded(line, chunk, start, n);
+            consumed += n;
+            if (consumed > MAX_HEAD_SIZE) {
+                throw new HeaderTooLargeException("Request head larger than " + MAX_HEAD_SIZE);
+            }
+        }
+    }
+
+    private static void appendBounded(StringBuilder line, char[] chunk, int from, int to) throws HeaderTooLargeException {
+        if (line.length() + to - from > MAX_LINE_LENGTH) {
+            throw new HeaderTooLargeException("Header line longer than " + MAX_LINE_LENGTH);
+        }
+        line.append(chunk, from, to - from);
+    }
+
+    // The first line is the request line; every later one a header field. Returns the request line.
+    private static String addLine(String requestLine, Map<String, String> headers, String line) throws IOException {
+        if (requestLine == null) {
+            return line.toString();
+        }
+        if (headers.size() >= MAX_HEADERS) {
+            throw new HeaderTooLargeException("More than " + MAX_HEADERS + " header fields");
+        }
+        int colon = line.indexOf(':');
+        if (colon > 0) {
+            String name = line.substring(0, colon).trim().toLowerCase();
+            String value = line.substring(colon + 1).trim();
+            if (name.equals("content-length")) {
+                checkContentLength(value, headers.get(name));
+            }
+            headers.put(name, value);
+        }
+        return requestLine;
+    }
+
+    // RFC 9112 section 6.3: a Content-Length that is not one decimal number, or repeated with a
+    // different value, leaves the body's end unknown, so the request cannot be read or skipped
+    private static void checkContentLength(String value, String previous) throws BadRequestException {
+        boolean valid = !value.isEmpty() && value.length() <= 18;
+        for (int i = 0; valid && i < value.length(); i++) {
+            valid = value.charAt(i) >= '0' && value.charAt(i) <= '9';
+        }
+        if (!valid || (previous != null && !previous.equals(value))) {
+            throw new BadRequestException("Bad Content-Length: " + value);
+        }
+    }
+
+    private static HttpRequest parse(String requestLine, Map<String, String> headers) throws IOException {
+        String[] parts = requestLine.split(" ");
+        if (parts.length != 3) {
+            throw new BadRequestException("Malformed request line: " + requestLine);
+        }
+        return new HttpRequest(requestLine, parts[0], parts[1], parts[2], headers);
+    }
+
+    public String getRequestLine() {
+        return requestLine;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    // Request target with any query string removed
+    public String getPath() {
+        int query = target.indexOf('?');
+        return query < 0 ? target : target.substring(0, query);
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    // Header value by case-insensitive name, or null
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase());
+    }
+
+    // HTTP/1.1 connections persist unless the client says "Connection: close";
+    // HTTP/1.0 ones only if it asks for keep-alive
+    public boolean isKeepAlive() {
+        String connection = getHeader("connection");
+        if (version.equals("HTTP/1.1")) {
+            return connection == null || !connection.toLowerCase().contains("close");
+        }
+        return connection != null && connection.toLowerCase().contains("keep-alive");
+    }
+
+    // Skips the request body so the next pipelined request can be read. Returns false if
+    // the body length is unknown (chunked), in which case the connection cannot be reused.
+    public boolean skipBody(BufferedReader in) throws IOException {
+        if (getHeader("transfer-encoding") != null) {
+            return false;
+        }
+        String contentLength = getHeader("content-length");
+        if (contentLength == null) {
+            return true;
+        }
+        // Validated by read(). The reader decodes ISO-8859-1, so one char is one byte.
+        long remaining = Long.parseLong(contentLength);
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                return false;
+            }
+            remaining -= skipped;
+        }
+        return true;
+    }
+}
+
+
+6. HttpConnection.java
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+// HTTP/1.1 connection lifecycle for the socket-based servers: reads requests one after
+// another from the same connection and answers them in order, so pipelined requests work
+// and clients skip a TCP handshake per request. The connection is closed when the client
+// asks for it, after an idle timeout, or after a maximum number of requests. The IdleReaper
+// also enforces -Didle.lifetime, which the per-read idle timeout cannot: a client that
+// trickles a request one byte at a time never trips SO_TIMEOUT.
+public class HttpConnection implements Runnable {
+    static final int IDLE_TIMEOUT_MILLIS = Integer.getInteger("http.idleTimeout", 5000);
+    static final int MAX_REQUESTS = Integer.getInteger("http.maxRequests", 1000);
+
+    public interface Handler {
+        // Writes the complete response, with "Connection: keep-alive" or "close" to match keepAlive
+        void handle(HttpRequest request, SocketChannel channel, boolean keepAlive) throws IOException;
+    }
+
+    private final SocketChannel channel;
+    private final Handler handler;
+
+    public HttpConnection(SocketChannel channel, Handler handler) {
+        this.channel = channel;
+        this.handler = handler;
+    }
+
+    @Override
+    public void run() {
+        IdleReaper.Deadlines deadlines = IdleReaper.shared().register(channel.socket());
+        try {
+            channel.socket().setSoTimeout(IDLE_TIMEOUT_MILLIS);
+            channel.socket().setTcpNoDelay(true);
+            // Pipelined requests that arrive together simply wait in this reader's buffer
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                    deadlines.track(channel.socket().getInputStream()), StandardCharsets.ISO_8859_1));
+
+            for (int served = 1; ; served++) {
+                HttpRequest request = HttpRequest.read(in);
+                if (request == null) {
+                    break; // client closed the connection
+                }
+                boolean keepAlive = request.isKeepAlive() && served < MAX_REQUESTS && request.skipBody(in);
+                handler.handle(request, channel, keepAlive);
+                if (!keepAlive) {
+                    break;
+                }
+            }
+        } catch (SocketTimeoutException e) {
+            // idle for too long: just close
+        } catch (HttpRequest.BadRequestException e) {
+            // The client's fault, so no stack trace: answer and close
+            try {
+                StaticFiles.sendError(channel, e.getStatus(), e.getReason(), null, false);
+            } catch (IOException ignored) {
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            deadlines.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,337 @@
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+// Closes connections that stop making progress, using the hashed TimingWheel from UDP.java:
+//   read idle   - nothing received for idle.read ms (dead peers, half-open connections)
+//   write stall - a write has been blocked, or output pending, for idle.write ms (peers that stop reading)
+//   lifetime    - the connection has been open for idle.lifetime ms (slowloris-style trickling)
+// 0 turns a deadline off; idle.tick is the timer resolution. Defaults: 300000, 30000, 0 and 100.
+// A server whose clients may legitimately stay silent, like chat, registers with its own read
+// idle period instead (register(socket, readIdleMillis)).
+//
+// Activity only writes a timestamp into the connection's Deadlines, read from a clock the reaper
+// updates once per tick, so it costs no allocation and no timer operation. Each connection has
+// a single timer in the wheel, set for its earliest deadline. When it fires, the connection is
+// either reaped or rescheduled for whatever deadline now comes first. A busy connection costs
+// one O(1) reschedule per idle period, not one per read.
+//
+// Two ways to drive it:
+//   - shared(): one "idle-reaper" thread for the blocking servers. Register each accepted
+//     socket, wrap its streams with track(), and cancel() when the handler finishes. Reaping
+//     closes the socket, which unblocks the handler thread stuck in read() or write().
+//   - fromSystemProperties() plus poll(): owned by an NIO selector thread, which calls poll()
+//     from its loop. Targets are then reaped on that thread.
+public final class IdleReaper implements Closeable {
+
+    public enum Reason {
+        READ_IDLE, WRITE_STALL, LIFETIME
+    }
+
+    public interface Target {
+        // Called on the thread that drives the reaper
+        void reap(Reason reason);
+    }
+
+    private static IdleReaper shared;
+
+    private final long readIdleMillis;
+    private final long writeStallMillis;
+    private final long lifetimeMillis;
+    private final TimingWheel wheel;
+    private final Deadlines disabled = new Deadlines(null, 0, 0);
+
+    // Other threads register and cancel through these; only the owning thread touches the wheel
+    private final Queue<Deadlines> registrations = new ConcurrentLinkedQueue<>();
+    private final Queue<Deadlines> cancellations = new ConcurrentLinkedQueue<>();
+    private final LongAdder[] reaped = new LongAdder[Reason.values().length];
+    private volatile long now = System.currentTimeMillis();
+    private volatile boolean running;
+    private Thread thread;
+
+    public IdleReaper(long readIdleMillis, long writeStallMillis, long lifetimeMillis, long tickMillis) {
+        this.readIdleMillis = readIdleMillis;
+        this.writeStallMillis = writeStallMillis;
+        this.lifetimeMillis = lifetimeMillis;
+        this.wheel = new TimingWheel(tickMillis, 256, 4);
+        for (Reason reason : Reason.values()) {
+            reaped[reason.ordinal()] = MetricsRegistry.shared().counter("connections_reaped_total",
+                    "Connections closed by the idle reaper", "reason", reason.name().toLowerCase());
+        }
+    }
+
+    public static IdleReaper fromSystemProperties() {
+        return new IdleReaper(Long.getLong("idle.read", 300_000), Long.getLong("idle.write", 30_000),
+                Long.getLong("idle.lifetime", 0), Long.getLong("idle.tick", 100));
+    }
+
+    // The reaper thread shared by the blocking servers, started on first use
+    public static synchronized IdleReaper shared() {
+        if (shared == null) {
+            shared = fromSystemProperties();
+            if (shared.isEnabled()) {
+                shared.start();
+            }
+        }
+        return shared;
+    }
+
+    public boolean isEnabled() {
+        return readIdleMillis > 0 || writeStallMillis > 0 || lifetimeMillis > 0;
+    }
+
+    public long tickMillis() {
+        return wheel.tickMillis();
+    }
+
+    // Timers in the wheel; owning thread only
+    public int size() {
+        return wheel.size();
+    }
+
+    // Whether poll() has anything to do, so an owning event loop knows it must wake up for it
+    public boolean hasTimers() {
+        return wheel.size() > 0 || !registrations.isEmpty();
+    }
+
+    public long getReapedCount(Reason reason) {
+        return reaped[reason.ordinal()].sum();
+    }
+
+    // Safe from any thread. The first check is scheduled on the owning thread's next poll.
+    public Deadlines register(Target target) {
+        return register(target, readIdleMillis);
+    }
+
+    // As register(target), with readIdleMillis in place of idle.read; 0 turns read idle off
+    public Deadlines register(Target target, long readIdleMillis) {
+        if (!isEnabled() || (readIdleMillis <= 0 && writeStallMillis <= 0 && lifetimeMillis <= 0)) {
+            return disabled;
+        }
+        Deadlines deadlines = new Deadlines(target, now, readIdleMillis);
+        registrations.add(deadlines);
+        return deadlines;
+    }
+
+    public Deadlines register(Socket socket) {
+        return register(socket, readIdleMillis);
+    }
+
+    public Deadlines register(Socket socket, long readIdleMillis) {
+        return register(reason -> {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }, readIdleMillis);
+    }
+
+    // Runs poll() every tick on a daemon thread of its own
+    public synchronized IdleReaper start() {
+        if (thread == null) {
+            running = true;
+            thread = new Thread(() -> {
+                while (running) {
+                    try {
+                        Thread.sleep(wheel.tickMillis());
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                    poll(System.currentTimeMillis());
+                }
+            }, "idle-reaper");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return this;
+    }
+
+    // Applies registrations and cancellations, then fires every timer due by nowMillis.
+    // Owning thread only: the reaper's own thread if start() was called, otherwise the caller.
+    public void poll(long nowMillis) {
+        now = nowMillis;
+        Deadlines deadlines;
+        while ((deadlines = registrations.poll()) != null) {
+            if (!deadlines.cancelled) {
+                deadlines.schedule(deadlines.nextDeadline(nowMillis) - nowMillis);
+            }
+        }
+        while ((deadlines = cancellations.poll()) != null) {
+            if (deadlines.timeout != null) {
+                deadlines.timeout.cancel();
+                deadlines.timeout = null;
+            }
+        }
+        wheel.advance(nowMillis);
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    // The deadlines of one connection. The activity methods may be called from any thread.
+    public final class Deadlines {
+        private final Target target;
+        private final long openedAt;
+        private final long readIdleMillis;
+        private final Runnable check = this::check;
+        private volatile long lastRead;
+        private volatile long writeSince; // 0 while no write is blocked
+        private volatile boolean cancelled;
+        private TimingWheel.Timeout timeout; // owning thread only
+
+        Deadlines(Target target, long openedAt, long readIdleMillis) {
+            this.target = target;
+            this.openedAt = openedAt;
+            this.readIdleMillis = readIdleMillis;
+            this.lastRead = openedAt;
+        }
+
+        // Bytes arrived: restarts the read-idle clock
+        public void readActivity() {
+            lastRead = now;
+        }
+
+        // A write is about to block, or output is waiting: starts the write-stall clock unless it is running
+        public void writeStarted() {
+            if (writeSince == 0) {
+                writeSince = now;
+            }
+        }
+
+        // The write completed, or made progress: stops the write-stall clock
+        public void writeFinished() {
+            writeSince = 0;
+        }
+
+        // The connection is closed: drops its timer. Safe to call more than once.
+        public void cancel() {
+            if (target == null || cancelled) {
+                return;
+            }
+            cancelled = true;
+            cancellations.add(this);
+        }
+
+        // Marks read activity whenever the stream returns data
+        public InputStream track(InputStream in) {
+            if (target == null) {
+                return in;
+            }
+            return new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        readActivity();
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int n = super.read(b, off, len);
+                    if (n > 0) {
+                        readActivity();
+                    }
+                    return n;
+                }
+            };
+        }
+
+        // Times every write, so one that blocks for longer than idle.write gets the socket closed
+        public OutputStream track(OutputStream out) {
+            if (target == null) {
+                return out;
+            }
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    writeStarted();
+                    try {
+                        out.write(b);
+                    } finally {
+                        writeFinished();
+                    }
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    writeStarted();
+                    try {
+                        out.write(b, off, len);
+                    } finally {
+                        writeFinished();
+                    }
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    writeStarted();
+                    try {
+                        out.flush();
+                    } finally {
+                        writeFinished();
+                    }
+                }
+            };
+        }
+
+        private void schedule(long delayMillis) {
+            timeout = wheel.schedule(check, Math.max(0, delayMillis));
+        }
+
+        // Earliest deadline still ahead, or a time at or before nowMillis if one has passed
+        private long nextDeadline(long nowMillis) {
+            long next = Long.MAX_VALUE;
+            if (lifetimeMillis > 0) {
+                next = Math.min(next, openedAt + lifetimeMillis);
+            }
+            if (readIdleMillis > 0) {
+                next = Math.min(next, lastRead + readIdleMillis);
+            }
+            if (writeStallMillis > 0) {
+                long since = writeSince;
+                // Nothing blocked yet: look again one stall period from now
+                next = Math.min(next, (since != 0 ? since : nowMillis) + writeStallMillis);
+            }
+            return next;
+        }
+
+        // Runs on the owning thread when this connection's timer fires
+        private void check() {
+            timeout = null;
+            if (cancelled) {
+                return;
+            }
+            long t = now;
+            long since = writeSince;
+            Reason reason = null;
+            if (lifetimeMillis > 0 && t >= openedAt + lifetimeMillis) {
+                reason = Reason.LIFETIME;
+            } else if (readIdleMillis > 0 && t >= lastRead + readIdleMillis) {
+                reason = Reason.READ_IDLE;
+            } else if (writeStallMillis > 0 && since != 0 && t >= since + writeStallMillis) {
+                reason = Reason.WRITE_STALL;
+            }
+            if (reason == null) {
+                schedule(nextDeadline(t) - t);
+                return;
+            }
+            cancelled = true;
+            reaped[reason.ordinal()].increment();
+            target.reap(reason);
+        }
+    }
+}
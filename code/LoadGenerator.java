@@ -0,0 +1,450 @@
+a. LoadGenerator.java
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Headless load generator for line-based echo servers (Echoserver's `server`, NonBlockingServer,
+// or anything else that answers each "\n"-terminated line with one line).
+//
+// Opens load.connections connections spread over load.threads selector threads and keeps up to
+// load.depth requests of load.size bytes in flight on each (pipelining).
+//   closed loop (load.rate=0): a new request goes out as soon as a reply comes back
+//   open loop (load.rate=N):   N requests/s in total on a fixed schedule, whether or not the
+//                              server keeps up
+// Latency is recorded in a shared LatencyHistogram. In open-loop mode it is measured from when
+// each request was due to be sent, not when it was actually sent, so a server stall counts
+// against every request that should have gone out during it (coordinated omission). In closed
+// loop, load.expectedIntervalMicros applies the same correction after the fact.
+//
+// Open loop sleeps until the earliest request due on the thread's connections: in select() while
+// that is at least 1 ms away, then in selectNow() and parks of at most load.parkMicros (0 spins).
+// How late each request went out is reported as send lag, and the time from the actual send to
+// the reply as service time, so generator delays can be told apart from server ones.
+//
+//   java -Dload.connections=200 -Dload.depth=8 -Dload.duration=10 LoadGenerator localhost 8080
+//   java -Dload.rate=50000 -Dload.connections=50 LoadGenerator
+public class LoadGenerator {
+
+    private final InetSocketAddress address;
+    private final int connections = Integer.getInteger("load.connections", 50);
+    private final int threads = Integer.getInteger("load.threads", Math.min(connections, Runtime.getRuntime().availableProcessors()));
+    private final int depth = Integer.getInteger("load.depth", 1);
+    private final int size = Math.max(1, Integer.getInteger("load.size", 64));
+    private final long rate = Long.getLong("load.rate", 0);
+    private final long parkNanos = Long.getLong("load.parkMicros", 20) * 1000;
+    private final long expectedIntervalNanos = Long.getLong("load.expectedIntervalMicros", 0) * 1000;
+    private final long warmupNanos = Long.getLong("load.warmup", 2) * 1_000_000_000L;
+    private final long durationNanos = Long.getLong("load.duration", 10) * 1_000_000_000L;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LatencyHistogram sendLag = new LatencyHistogram();     // open loop: actual send - scheduled send
+    private final LatencyHistogram serviceTime = new LatencyHistogram(); // open loop: reply - actual send
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private volatile boolean running = true;
+    private volatile boolean measuring;
+    private SocketProfile socketProfile = SocketProfile.fromSystemProperties();
+
+    public LoadGenerator(InetSocketAddress address) {
+        this.address = address;
+    }
+
+    // What one run measured; the histograms hold times in ns
+    public static final class Result {
+        private final long requests;
+        private final double seconds;
+        private final long errors;
+        private final LatencyHistogram latency;
+        private final LatencyHistogram sendLag;
+
+        Result(long requests, double seconds, long errors, LatencyHistogram latency, LatencyHistogram sendLag) {
+            this.requests = requests;
+            this.seconds = seconds;
+            this.errors = errors;
+            this.latency = latency;
+            this.sendLag = sendLag;
+        }
+
+        public double throughput() {
+            return requests / seconds;
+        }
+
+        public long requests() {
+            return requests;
+        }
+
+        public long errors() {
+            return errors;
+        }
+
+        public LatencyHistogram latency() {
+            return latency;
+        }
+
+        // Open loop only: how far behind schedule requests were sent (empty in closed loop)
+        public LatencyHistogram sendLag() {
+            return sendLag;
+        }
+    }
+
+    // Options for the client sockets, applied before they connect; set before run()
+    public void setSocketProfile(SocketProfile socketProfile) {
+        this.socketProfile = socketProfile;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 4567;
+        new LoadGenerator(new InetSocketAddress(host, port)).run();
+    }
+
+    public Result run() throws IOException, InterruptedException {
+        System.out.println(connections + " connections on " + threads + " threads to " + address + ", depth " + depth
+                + ", " + size + "-byte messages, " + (rate > 0 ? "open loop at " + rate + " req/s" : "closed loop"));
+
+        byte[] message = new byte[size];
+        java.util.Arrays.fill(message, (byte) 'x');
+        message[size - 1] = '\n';
+
+        long start = System.nanoTime() + 100_000_000L; // let every connection open first
+        List<Worker> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(new Worker(t, message, start));
+        }
+        for (int i = 0; i < connections; i++) {
+            workers.get(i % threads).connect(i);
+        }
+        for (Worker worker : workers) {
+            worker.start();
+        }
+
+        // Report once a second; the histogram starts counting after the warm-up
+        long seconds = (warmupNanos + durationNanos) / 1_000_000_000L;
+        long lastCompleted = 0;
+        long measuredFrom = 0;
+        for (int second = 1; second <= seconds; second++) {
+            Thread.sleep(Math.max(0, (start + second * 1_000_000_000L - System.nanoTime()) / 1_000_000));
+            if (!measuring && second * 1_000_000_000L >= warmupNanos) {
+                histogram.reset();
+                sendLag.reset();
+                serviceTime.reset();
+                completed.reset();
+                lastCompleted = 0;
+                measuredFrom = System.nanoTime();
+                measuring = true;
+                continue;
+            }
+            long done = completed.sum();
+            System.out.println("t=" + second + "s " + (done - lastCompleted) + " req/s" + (measuring ? "" : " (warm-up)"));
+            lastCompleted = done;
+        }
+        running = false;
+        double elapsed = Math.max(1, System.nanoTime() - measuredFrom) / 1e9;
+        for (Worker worker : workers) {
+            worker.join();
+        }
+
+        System.out.printf("%d requests in %.1f s: %.0f req/s, %d errors%n", completed.sum(), elapsed, completed.sum() / elapsed, errors.sum());
+        System.out.printf("latency (us): p50 %d, p90 %d, p99 %d, p99.9 %d, max %d, mean %.1f (%d samples)%n",
+                histogram.percentile(50) / 1000, histogram.percentile(90) / 1000, histogram.percentile(99) / 1000,
+                histogram.percentile(99.9) / 1000, histogram.max() / 1000, histogram.mean() / 1000, histogram.count());
+        if (rate > 0) {
+            print("service time", serviceTime);
+            print("send lag", sendLag);
+        }
+        return new Result(completed.sum(), elapsed, errors.sum(), histogram, sendLag);
+    }
+
+    private static void print(String name, LatencyHistogram h) {
+        System.out.printf("%s (us): p50 %d, p90 %d, p99 %d, p99.9 %d, max %d, mean %.1f%n", name,
+                h.percentile(50) / 1000, h.percentile(90) / 1000, h.percentile(99) / 1000,
+                h.percentile(99.9) / 1000, h.max() / 1000, h.mean() / 1000);
+    }
+
+    private static final class Connection {
+        final SocketChannel channel;
+        final ByteBuffer out;
+        final long[] sentAt;   // ring of the start times of outstanding requests, oldest at head
+        final long[] queuedAt; // open loop: when each of those was actually queued for sending
+        int head;
+        int outstanding;
+        long scheduled;        // open loop: index of the next request on this connection's schedule
+        final long offset;     // open loop: stagger so connections don't all send at once
+
+        Connection(SocketChannel channel, int depth, int size, long offset) {
+            this.channel = channel;
+            this.out = ByteBuffer.allocateDirect(depth * size);
+            this.out.flip();
+            this.sentAt = new long[depth];
+            this.queuedAt = new long[depth];
+            this.offset = offset;
+        }
+    }
+
+    private final class Worker extends Thread {
+        private final Selector selector;
+        private final byte[] message;
+        private final long start;
+        private final List<Connection> connections = new ArrayList<>();
+        private final ByteBuffer in = ByteBuffer.allocateDirect(64 * 1024);
+        private final long intervalNanos; // open loop: between requests on one connection
+
+        Worker(int id, byte[] message, long start) throws IOException {
+            super("load-" + id);
+            this.selector = Selector.open();
+            this.message = message;
+            this.start = start;
+            this.intervalNanos = rate > 0 ? LoadGenerator.this.connections * 1_000_000_000L / rate : 0;
+        }
+
+        void connect(int index) throws IOException {
+            SocketChannel channel = SocketChannel.open();
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            socketProfile.configure(channel);
+            channel.connect(address);
+            channel.configureBlocking(false);
+            long offset = intervalNanos * index / LoadGenerator.this.connections;
+            Connection connection = new Connection(channel, depth, size, offset);
+            channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.add(connection);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (System.nanoTime() < start) {
+                    Thread.sleep(1);
+                }
+                while (running) {
+                    long now = System.nanoTime();
+                    long nextDue = Long.MAX_VALUE;
+                    for (Connection c : connections) {
+                        if (c.channel.isOpen()) {
+                            nextDue = Math.min(nextDue, send(c, now));
+                        }
+                    }
+                    // Closed loop only needs to wake for replies; open loop also for the next send
+                    // due, which select()'s millisecond timeout cannot hit on its own
+                    long wait = nextDue - System.nanoTime();
+                    if (rate == 0) {
+                        selector.select(100);
+                    } else if (wait >= 1_000_000) {
+                        selector.select(Math.min(100, wait / 1_000_000));
+                    } else if (selector.selectNow() == 0 && wait > 0) {
+                        if (parkNanos > 0) {
+                            LockSupport.parkNanos(Math.min(wait, parkNanos));
+                        } else {
+                            Thread.onSpinWait();
+                        }
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Connection c = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                read(c);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                flush(c, key);
+                            }
+                        } catch (IOException e) {
+                            errors.increment();
+                            key.cancel();
+                            c.channel.close();
+                        }
+                    }
+                }
+            } catch (IOException | InterruptedException e) {
+                e.printStackTrace();
+            } finally {
+                for (Connection c : connections) {
+                    try {
+                        c.channel.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+
+        // Queues as many requests as the depth (and in open loop, the schedule) allows. Returns
+        // when the next request on this connection is due, or Long.MAX_VALUE while that waits
+        // for a reply (or in closed loop).
+        private long send(Connection c, long now) throws IOException {
+            if (c.outstanding == depth) {
+                return Long.MAX_VALUE;
+            }
+            long nextDue = Long.MAX_VALUE;
+            c.out.compact();
+            while (c.outstanding < depth && c.out.remaining() >= size) {
+                long startTime;
+                int slot = (c.head + c.outstanding) % depth;
+                if (rate > 0) {
+                    startTime = start + c.offset + c.scheduled * intervalNanos;
+                    if (startTime > now) {
+                        nextDue = startTime;
+                        break;
+                    }
+                    c.scheduled++;
+                    long queued = System.nanoTime();
+                    c.queuedAt[slot] = queued;
+                    if (measuring) {
+                        sendLag.record(queued - startTime);
+                    }
+                } else {
+                    startTime = now;
+                }
+                c.out.put(message);
+                c.sentAt[slot] = startTime;
+                c.outstanding++;
+            }
+            c.out.flip();
+            SelectionKey key = c.channel.keyFor(selector);
+            try {
+                flush(c, key);
+            } catch (IOException e) {
+                errors.increment();
+                key.cancel();
+                c.channel.close();
+                return Long.MAX_VALUE;
+            }
+            return nextDue;
+        }
+
+        private void flush(Connection c, SelectionKey key) throws IOException {
+            c.channel.write(c.out);
+            key.interestOps(c.out.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+
+        // Every '\n' received completes the oldest outstanding request
+        private void read(Connection c) throws IOException {
+            in.clear();
+            int n = c.channel.read(in);
+            if (n < 0) {
+                throw new IOException("server closed the connection");
+            }
+            long now = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                if (in.get(i) != '\n' || c.outstanding == 0) {
+                    continue;
+                }
+                long latency = now - c.sentAt[c.head];
+                long queued = c.queuedAt[c.head];
+                c.head = (c.head + 1) % depth;
+                c.outstanding--;
+                if (measuring) {
+                    if (rate > 0) {
+                        serviceTime.record(now - queued);
+                    }
+                    if (expectedIntervalNanos > 0) {
+                        histogram.recordWithExpectedInterval(latency, expectedIntervalNanos);
+                    } else {
+                        histogram.record(latency);
+                    }
+                }
+                completed.increment();
+            }
+            if (rate == 0) {
+                send(c, now); // closed loop: replace what just completed
+            }
+        }
+    }
+}
+
+
+b. LatencyHistogram.java
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Thread-safe version of LogLinearHistogram (same buckets, ~6% resolution) for recording from
+// many threads at once: each record is an atomic increment on one bucket, with no locks and no
+// allocation. Reads are not a consistent snapshot while recording continues, which is fine for
+// reporting.
+public class LatencyHistogram {
+    private final AtomicLongArray counts = new AtomicLongArray(LogLinearHistogram.index(Long.MAX_VALUE) + 1);
+    private final AtomicLong max = new AtomicLong();
+    private final LongAdder sum = new LongAdder(); // exact, unlike the bucket values
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(LogLinearHistogram.index(value));
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    // Coordinated-omission correction for closed-loop measurement: a response that took longer
+    // than the expected interval between requests also stands in for the requests that would
+    // have been sent (and delayed) during the stall, at value - interval, value - 2 * interval, ...
+    public void recordWithExpectedInterval(long value, long expectedInterval) {
+        record(value);
+        if (expectedInterval <= 0) {
+            return;
+        }
+        for (long missing = value - expectedInterval; missing >= expectedInterval; missing -= expectedInterval) {
+            record(missing);
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        max.set(0);
+        sum.reset();
+    }
+
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public long sum() {
+        return sum.sum();
+    }
+
+    public double mean() {
+        long total = count();
+        return total == 0 ? 0 : (double) sum() / total;
+    }
+
+    public long percentile(double percent) {
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percent / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(LogLinearHistogram.highestEquivalent(i), max());
+            }
+        }
+        return max();
+    }
+}
@@ -1,31 +1,46 @@
 a. LoggedServer.java
 
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.Date;
 import java.util.logging.Level;
-import java.util.logging.Logger;
 
 public class LoggedServer {
-    private static final Logger logger = Logger.getLogger(LoggedServer.class.getName());
+    // Records go to a ring buffer and are written to LoggedServer.log by a background thread,
+    // so connection threads never wait on the log file
+    private static final AsyncLogger logger = AsyncLogger.create(LoggedServer.class);
 
     public static void main(String[] args) {
         int port = 12345;
 
-        try (ServerSocket serverSocket = new ServerSocket(port)) {
-            logger.info("Server is listening on port " + port);
+        // -Ddaytime.mode=reactor serves the time from the NIO reactor instead of a thread per client
+        if (System.getProperty("daytime.mode", "thread").equals("reactor")) {
+            try {
+                DaytimeHandler handler = new DaytimeHandler(DaytimeClock.shared());
+                Reactor reactor = new Reactor(new InetSocketAddress(port), () -> handler);
+                reactor.setMetrics(ServerMetrics.forServer("daytime"));
+                reactor.start();
+                logger.info("Server is listening on port {} (reactor)", port);
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, "Couldn't start server", ex);
+            }
+            return;
+        }
+
+        ConnectionDispatcher dispatcher = ConnectionDispatcher.fromSystemProperties("daytime");
+        SocketProfile profile = SocketProfile.fromSystemProperties();
+
+        try (ServerSocket serverSocket = profile.openServerSocket(port)) {
+            logger.info("Server is listening on port {}", port);
 
             while (true) {
                 try {
                     Socket socket = serverSocket.accept();
+                    profile.configure(socket);
                     logger.info("New client connected");
 
-                    Thread task = new DaytimeThread(socket);
-                    task.start();
+                    dispatcher.dispatch(socket, new DaytimeThread(socket));
                 } catch (IOException ex) {
                     logger.log(Level.SEVERE, "Error accepting client connection", ex);
                 }
@@ -35,7 +50,8 @@ public class LoggedServer {
         }
     }
 
-    private static class DaytimeThread extends Thread {
+    private static class DaytimeThread implements Runnable {
+        private static final ServerMetrics metrics = ServerMetrics.forServer("daytime");
         private Socket socket;
 
         DaytimeThread(Socket socket) {
@@ -45,14 +61,16 @@ public class LoggedServer {
         @Override
         public void run() {
             try {
-                Writer out = new OutputStreamWriter(socket.getOutputStream());
-                Date now = new Date();
-                out.write(now.toString() + "\r\n");
-                out.flush();
-                logger.info("Sent date to client: " + now.toString());
+                // The reply only changes once a second, so it is encoded once a second
+                // by DaytimeClock and every connection writes the same bytes
+                DaytimeClock.Tick now = DaytimeClock.shared().current();
+                socket.getOutputStream().write(now.bytes());
+                metrics.wrote(now.bytes().length);
+                logger.info("Sent date to client: {}", now.text());
                 socket.close();
                 logger.info("Client disconnected");
             } catch (IOException ex) {
+                metrics.error();
                 logger.log(Level.SEVERE, "Error handling client connection", ex);
             }
         }
@@ -70,6 +88,8 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class LoggedClient {
+    // A one-shot command whose result is the log line itself, so it stays on the console
+    // logger; AsyncLogger only pays off on the server's connection threads
     private static final Logger logger = Logger.getLogger(LoggedClient.class.getName());
 
     public static void main(String[] args) {
@@ -87,3 +107,342 @@ public class LoggedClient {
         }
     }
 }
+
+
+c. AsyncLogger.java
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+// Logger whose callers only copy references into a pre-allocated ring buffer. A background
+// thread formats the records and writes them to a file in batches. Messages use "{}"
+// placeholders and are formatted only if the level is enabled, on the writer thread.
+//
+// Configured with system properties:
+//   log.level (INFO), log.file (<class name>.log), log.capacity (8192 records),
+//   log.overflow (drop | block: what callers do when the buffer is full)
+public class AsyncLogger implements Closeable {
+
+    public enum OverflowPolicy { DROP, BLOCK }
+
+    private static final int MAX_BATCH = 256;
+
+    private final String name;
+    private final int threshold;
+    private final OverflowPolicy policy;
+    private final Writer out;
+
+    // Bounded multi-producer ring: a producer claims a sequence number by CAS on tail, fills the
+    // slot and then publishes it by advancing that slot's sequence. Only the writer thread reads.
+    private final Record[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // writer thread only
+
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public AsyncLogger(String name, Path file, Level level, int capacity, OverflowPolicy policy) throws IOException {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        this.name = name;
+        this.threshold = level.intValue();
+        this.policy = policy;
+        this.out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND), 64 * 1024);
+
+        slots = new Record[capacity];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Record();
+            sequences.set(i, i);
+        }
+        mask = capacity - 1;
+
+        writer = new Thread(this::drain, "async-logger-" + name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Logger for a class, configured from the log.* system properties and flushed on exit
+    public static AsyncLogger create(Class<?> type) {
+        try {
+            AsyncLogger logger = new AsyncLogger(type.getName(),
+                    Paths.get(System.getProperty("log.file", type.getSimpleName() + ".log")),
+                    Level.parse(System.getProperty("log.level", "INFO")),
+                    Integer.getInteger("log.capacity", 8192),
+                    OverflowPolicy.valueOf(System.getProperty("log.overflow", "drop").toUpperCase()));
+            Runtime.getRuntime().addShutdownHook(new Thread(logger::close));
+            return logger;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open log file for " + type.getName(), e);
+        }
+    }
+
+    public boolean isLoggable(Level level) {
+        return level.intValue() >= threshold;
+    }
+
+    public void info(String message) {
+        log(Level.INFO, message, null, null, null);
+    }
+
+    public void info(String pattern, Object arg) {
+        log(Level.INFO, pattern, arg, null, null);
+    }
+
+    public void info(String pattern, Object arg1, Object arg2) {
+        log(Level.INFO, pattern, arg1, arg2, null);
+    }
+
+    public void log(Level level, String message, Throwable thrown) {
+        log(level, message, null, null, thrown);
+    }
+
+    public void log(Level level, String pattern, Object arg1, Object arg2, Throwable thrown) {
+        if (!isLoggable(level)) {
+            return;
+        }
+        long timestamp = System.currentTimeMillis();
+        while (true) {
+            long sequence = tail.get();
+            int index = (int) (sequence & mask);
+            long available = sequences.get(index) - sequence;
+            if (available == 0) {
+                if (tail.compareAndSet(sequence, sequence + 1)) {
+                    slots[index].set(timestamp, level, pattern, arg1, arg2, thrown);
+                    sequences.set(index, sequence + 1); // publish to the writer
+                    return;
+                }
+            } else if (available < 0) {
+                // Ring is full: the writer has not freed this slot yet
+                if (policy == OverflowPolicy.DROP || !running) {
+                    dropped.increment();
+                    return;
+                }
+                LockSupport.parkNanos(10_000);
+            }
+            // available > 0: another producer took this sequence; retry with the new tail
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private void drain() {
+        StringBuilder line = new StringBuilder(256);
+        long reportedDrops = 0;
+        while (true) {
+            int batch = 0;
+            try {
+                while (batch < MAX_BATCH) {
+                    int index = (int) (head & mask);
+                    if (sequences.get(index) != head + 1) {
+                        break; // nothing published at this position yet
+                    }
+                    Record record = slots[index];
+                    line.setLength(0);
+                    record.format(name, line);
+                    record.clear();
+                    sequences.set(index, head + slots.length); // hand the slot back to producers
+                    head++;
+                    out.append(line);
+                    batch++;
+                }
+
+                long drops = dropped.sum();
+                if (drops != reportedDrops) {
+                    out.append(Instant.now().toString()).append(" WARNING ").append(name)
+                            .append(" - ").append(String.valueOf(drops - reportedDrops))
+                            .append(" log records dropped, buffer full").append(System.lineSeparator());
+                    reportedDrops = drops;
+                }
+                if (batch == 0) {
+                    out.flush();
+                    if (!running) {
+                        break;
+                    }
+                    LockSupport.parkNanos(1_000_000); // idle: check again in a millisecond
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                LockSupport.parkNanos(100_000_000);
+            }
+        }
+    }
+
+    // Stops accepting records and waits until everything queued so far is on disk
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join(5000);
+            out.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static final class Record {
+        long timestamp;
+        Level level;
+        String pattern;
+        Object arg1;
+        Object arg2;
+        Throwable thrown;
+
+        void set(long timestamp, Level level, String pattern, Object arg1, Object arg2, Throwable thrown) {
+            this.timestamp = timestamp;
+            this.level = level;
+            this.pattern = pattern;
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+            this.thrown = thrown;
+        }
+
+        void clear() {
+            pattern = null;
+            arg1 = null;
+            arg2 = null;
+            thrown = null;
+        }
+
+        // "<time> <LEVEL> <logger> - <message>" with each {} replaced by the next argument
+        void format(String name, StringBuilder line) {
+            line.append(Instant.ofEpochMilli(timestamp)).append(' ').append(level.getName())
+                    .append(' ').append(name).append(" - ");
+            Object[] args = {arg1, arg2};
+            int arg = 0;
+            int from = 0;
+            int at;
+            while (arg < args.length && (at = pattern.indexOf("{}", from)) >= 0) {
+                line.append(pattern, from, at).append(args[arg++]);
+                from = at + 2;
+            }
+            line.append(pattern, from, pattern.length()).append(System.lineSeparator());
+            if (thrown != null) {
+                StringWriter trace = new StringWriter();
+                thrown.printStackTrace(new PrintWriter(trace));
+                line.append(trace);
+            }
+        }
+    }
+}
+
+
+d. DaytimeClock.java
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// The daytime reply ("<Date.toString()>\r\n"), encoded once per second by a ticker thread
+// instead of once per connection. Readers just pick up the latest Tick.
+public class DaytimeClock {
+    private static final DaytimeClock SHARED = new DaytimeClock();
+
+    private volatile Tick current;
+
+    private DaytimeClock() {
+        refresh();
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "daytime-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Fire just after each second boundary, when Date.toString() changes
+        long delay = 1000 - System.currentTimeMillis() % 1000 + 1;
+        ticker.scheduleAtFixedRate(this::refresh, delay, 1000, TimeUnit.MILLISECONDS);
+    }
+
+    public static DaytimeClock shared() {
+        return SHARED;
+    }
+
+    public Tick current() {
+        return current;
+    }
+
+    private void refresh() {
+        String text = new Date().toString();
+        byte[] bytes = (text + "\r\n").getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip().asReadOnlyBuffer();
+        current = new Tick(text, bytes, buffer);
+    }
+
+    public static final class Tick {
+        private final String text;
+        private final byte[] bytes;
+        private final ByteBuffer buffer;
+
+        Tick(String text, byte[] bytes, ByteBuffer buffer) {
+            this.text = text;
+            this.bytes = bytes;
+            this.buffer = buffer;
+        }
+
+        public String text() {
+            return text;
+        }
+
+        // Shared by every caller: do not modify
+        public byte[] bytes() {
+            return bytes;
+        }
+
+        // A fresh view of the shared read-only buffer, ready to write
+        public ByteBuffer buffer() {
+            return buffer.duplicate();
+        }
+    }
+}
+
+
+e. DaytimeHandler.java
+
+import java.nio.ByteBuffer;
+
+// Daytime protocol on the Reactor: write the current tick straight from the shared buffer,
+// then close once it has been sent. One handler instance serves every connection.
+public class DaytimeHandler implements ProtocolHandler {
+    private final DaytimeClock clock;
+
+    public DaytimeHandler(DaytimeClock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public void onOpen(Connection connection) {
+        connection.write(clock.current().buffer());
+        connection.closeAfterWrite();
+    }
+
+    @Override
+    public void onRead(Connection connection, ByteBuffer in) {
+        in.position(in.limit()); // daytime ignores anything the client sends
+    }
+}
@@ -0,0 +1,468 @@
+a. MetricsRegistry.java
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+// Process-wide counters, gauges and latency histograms.
+//
+// Registering a metric takes a lock and allocates; recording one never does. A counter is a
+// LongAdder, whose cells are striped over threads so a hot counter doesn't bounce one cache
+// line between cores; a histogram is a LatencyHistogram (one atomic increment per sample); a
+// gauge is only evaluated when someone reads it. Registering the same name and labels again
+// returns the existing counter or histogram, so servers can look their metrics up by name.
+//
+// Published two ways:
+//   - Prometheus text format through MetricsHandler: /metrics on FullFledgedHttpServer, or on a
+//     port of its own in any process started with -Dmetrics.port=9100
+//   - one JMX MBean per metric under the "metrics" domain, e.g. for jconsole (-Dmetrics.jmx=false
+//     turns this off)
+public final class MetricsRegistry {
+
+    public enum Type {
+        COUNTER, GAUGE, SUMMARY
+    }
+
+    // Quantiles published for every histogram; values are recorded in ns and published in seconds
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] SUMMARY_ATTRIBUTES = {"Count", "Max", "Mean", "P50", "P90", "P99", "P999"};
+
+    private static final MetricsRegistry SHARED = createShared();
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+    private final MBeanServer mbeanServer;
+
+    // mbeanServer may be null to keep the metrics out of JMX
+    public MetricsRegistry(MBeanServer mbeanServer) {
+        this.mbeanServer = mbeanServer;
+    }
+
+    public static MetricsRegistry shared() {
+        return SHARED;
+    }
+
+    private static MetricsRegistry createShared() {
+        boolean jmx = Boolean.parseBoolean(System.getProperty("metrics.jmx", "true"));
+        MetricsRegistry registry = new MetricsRegistry(jmx ? ManagementFactory.getPlatformMBeanServer() : null);
+        Integer port = Integer.getInteger("metrics.port");
+        if (port != null) {
+            try {
+                MetricsHandler.serve(registry, port);
+            } catch (IOException e) {
+                System.err.println("Could not serve metrics on port " + port + ": " + e);
+            }
+        }
+        return registry;
+    }
+
+    // Labels are name/value pairs, e.g. counter("bytes_sent_total", "Bytes written", "server", "chat")
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) register(name, help, Type.COUNTER, labels, LongAdder::new).value;
+    }
+
+    // Values are nanoseconds
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) register(name, help, Type.SUMMARY, labels, LatencyHistogram::new).value;
+    }
+
+    // Replaces the gauge already registered under the same name and labels, if any
+    public void gauge(String name, String help, LongSupplier value, String... labels) {
+        register(name, help, Type.GAUGE, labels, () -> value).value = value;
+    }
+
+    private synchronized Metric register(String name, String help, Type type, String[] labels, Supplier<Object> factory) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("labels must be name/value pairs");
+        }
+        Family family = families.get(name);
+        if (family == null) {
+            family = new Family(name, help, type);
+            families.put(name, family);
+        } else if (family.type != type) {
+            throw new IllegalArgumentException(name + " is already registered as a " + family.type);
+        }
+
+        String key = labelText(labels);
+        Metric metric = family.metrics.get(key);
+        if (metric == null) {
+            metric = new Metric(family, key, factory.get());
+            family.metrics.put(key, metric);
+            registerMBean(metric, labels);
+        }
+        return metric;
+    }
+
+    // Prometheus text exposition format, version 0.0.4
+    public synchronized void writePrometheus(StringBuilder out) {
+        for (Family family : families.values()) {
+            out.append("# HELP ").append(family.name).append(' ')
+                    .append(family.help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type.name().toLowerCase()).append('\n');
+            for (Metric metric : family.metrics.values()) {
+                Object value = metric.value;
+                switch (family.type) {
+                    case COUNTER:
+                        series(out, family.name, metric.labels, null).append(((LongAdder) value).sum()).append('\n');
+                        break;
+                    case GAUGE:
+                        series(out, family.name, metric.labels, null).append(((LongSupplier) value).getAsLong()).append('\n');
+                        break;
+                    case SUMMARY:
+                        LatencyHistogram histogram = (LatencyHistogram) value;
+                        for (double q : QUANTILES) {
+                            series(out, family.name, metric.labels, "quantile=\"" + q + "\"")
+                                    .append(histogram.percentile(q * 100) / 1e9).append('\n');
+                        }
+                        series(out, family.name + "_sum", metric.labels, null).append(histogram.sum() / 1e9).append('\n');
+                        series(out, family.name + "_count", metric.labels, null).append(histogram.count()).append('\n');
+                        break;
+                }
+            }
+        }
+    }
+
+    private static StringBuilder series(StringBuilder out, String name, String labels, String extra) {
+        out.append(name);
+        if (!labels.isEmpty() || extra != null) {
+            out.append('{').append(labels);
+            if (extra != null) {
+                out.append(labels.isEmpty() ? "" : ",").append(extra);
+            }
+            out.append('}');
+        }
+        return out.append(' ');
+    }
+
+    private static String labelText(String[] labels) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(labels[i]).append("=\"")
+                    .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")).append('"');
+        }
+        return text.toString();
+    }
+
+    private void registerMBean(Metric metric, String[] labels) {
+        if (mbeanServer == null) {
+            return;
+        }
+        StringBuilder name = new StringBuilder("metrics:name=").append(metric.family.name);
+        for (int i = 0; i < labels.length; i += 2) {
+            name.append(',').append(labels[i]).append('=').append(ObjectName.quote(labels[i + 1]));
+        }
+        try {
+            mbeanServer.registerMBean(new MetricMBean(metric), new ObjectName(name.toString()));
+        } catch (JMException e) {
+            System.err.println("Could not register MBean " + name + ": " + e);
+        }
+    }
+
+    private static final class Family {
+        final String name;
+        final String help;
+        final Type type;
+        final Map<String, Metric> metrics = new LinkedHashMap<>();
+
+        Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private static final class Metric {
+        final Family family;
+        final String labels; // already in Prometheus form: a="x",b="y"
+        volatile Object value; // LongAdder, LongSupplier or LatencyHistogram, depending on family.type
+
+        Metric(Family family, String labels, Object value) {
+            this.family = family;
+            this.labels = labels;
+            this.value = value;
+        }
+    }
+
+    // Read-only view of one metric: Count for counters, Value for gauges, and count, max, mean
+    // and percentiles in ns for histograms
+    private static final class MetricMBean implements DynamicMBean {
+        private final Metric metric;
+        private final MBeanInfo info;
+
+        MetricMBean(Metric metric) {
+            this.metric = metric;
+            String[] names = metric.family.type == Type.SUMMARY ? SUMMARY_ATTRIBUTES
+                    : new String[] {metric.family.type == Type.COUNTER ? "Count" : "Value"};
+            MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[names.length];
+            for (int i = 0; i < names.length; i++) {
+                String type = names[i].equals("Mean") ? "double" : "long";
+                attributes[i] = new MBeanAttributeInfo(names[i], type, metric.family.help, true, false, false);
+            }
+            this.info = new MBeanInfo(MetricMBean.class.getName(), metric.family.help, attributes, null, null, null);
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Object value = metric.value;
+            if (value instanceof LongAdder && attribute.equals("Count")) {
+                return ((LongAdder) value).sum();
+            }
+            if (value instanceof LongSupplier && attribute.equals("Value")) {
+                return ((LongSupplier) value).getAsLong();
+            }
+            if (value instanceof LatencyHistogram) {
+                LatencyHistogram histogram = (LatencyHistogram) value;
+                switch (attribute) {
+                    case "Count":
+                        return histogram.count();
+                    case "Max":
+                        return histogram.max();
+                    case "Mean":
+                        return histogram.mean();
+                    case "P50":
+                        return histogram.percentile(50);
+                    case "P90":
+                        return histogram.percentile(90);
+                    case "P99":
+                        return histogram.percentile(99);
+                    case "P999":
+                        return histogram.percentile(99.9);
+                }
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (AttributeNotFoundException ignored) {
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            return info;
+        }
+    }
+}
+
+
+b. ServerMetrics.java
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// The standard connection metrics of one server, all labelled server="<name>" in the shared
+// registry: accepted and rejected connections, active connections, bytes in and out, handler
+// errors and handler latency. Every recording method is a LongAdder update or a histogram
+// increment, so it is safe to call per read or write.
+//
+// "Handler latency" is whatever unit of work the server has: the whole connection for the
+// thread-per-connection servers, one read callback for the NIO reactor, one request for HTTP.
+public final class ServerMetrics {
+    private static final Map<String, ServerMetrics> SERVERS = new ConcurrentHashMap<>();
+
+    private final String server;
+    private final LongAdder accepted;
+    private final LongAdder rejected;
+    private final LongAdder active = new LongAdder();
+    private final LongAdder bytesIn;
+    private final LongAdder bytesOut;
+    private final LongAdder errors;
+    private final LatencyHistogram handlerLatency;
+
+    private ServerMetrics(MetricsRegistry registry, String server) {
+        this.server = server;
+        accepted = registry.counter("connections_accepted_total", "Connections accepted", "server", server);
+        rejected = registry.counter("connections_rejected_total", "Connections closed unhandled because the server was saturated", "server", server);
+        registry.gauge("connections_active", "Connections currently open", active::sum, "server", server);
+        bytesIn = registry.counter("bytes_received_total", "Bytes read from clients", "server", server);
+        bytesOut = registry.counter("bytes_sent_total", "Bytes written to clients", "server", server);
+        errors = registry.counter("handler_errors_total", "Connections or requests that failed with an error", "server", server);
+        handlerLatency = registry.histogram("handler_latency_seconds", "Time spent in the handler per connection, read callback or request", "server", server);
+    }
+
+    // One instance per name, so every part of a server records into the same metrics
+    public static ServerMetrics forServer(String server) {
+        return SERVERS.computeIfAbsent(server, name -> new ServerMetrics(MetricsRegistry.shared(), name));
+    }
+
+    public void accepted() {
+        accepted.increment();
+    }
+
+    public void rejected() {
+        rejected.increment();
+    }
+
+    public void opened() {
+        active.increment();
+    }
+
+    public void closed() {
+        active.decrement();
+    }
+
+    public void read(long bytes) {
+        if (bytes > 0) {
+            bytesIn.add(bytes);
+        }
+    }
+
+    public void wrote(long bytes) {
+        if (bytes > 0) {
+            bytesOut.add(bytes);
+        }
+    }
+
+    public void error() {
+        errors.increment();
+    }
+
+    // startNanos is the System.nanoTime() taken when the handler started
+    public void handled(long startNanos) {
+        handlerLatency.record(System.nanoTime() - startNanos);
+    }
+
+    // Counts the bytes read through the stream; wrap the socket stream, under any buffering
+    public InputStream countIn(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    bytesIn.increment();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    bytesIn.add(n);
+                }
+                return n;
+            }
+        };
+    }
+
+    // Counts the bytes written through the stream; wrap the socket stream, under any buffering
+    public OutputStream countOut(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                bytesOut.increment();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len); // FilterOutputStream would write one byte at a time
+                wrote(len);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "ServerMetrics[" + server + ": accepted=" + accepted.sum() + ", active=" + active.sum()
+                + ", in=" + bytesIn.sum() + ", out=" + bytesOut.sum() + ", errors=" + errors.sum() + "]";
+    }
+}
+
+
+c. MetricsHandler.java
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+// Serves a MetricsRegistry in Prometheus text format. Mounted at /metrics by
+// FullFledgedHttpServer; serve() gives any other process an endpoint of its own.
+//
+//   curl localhost:8080/metrics
+public class MetricsHandler implements HttpHandler {
+    private final MetricsRegistry registry;
+
+    public MetricsHandler(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    // Starts a small HttpServer with only /metrics on the given port
+    public static HttpServer serve(MetricsRegistry registry, int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/metrics", new MetricsHandler(registry));
+        server.start();
+        System.out.println("Metrics on http://localhost:" + server.getAddress().getPort() + "/metrics");
+        return server;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+        StringBuilder text = new StringBuilder(4096);
+        registry.writePrometheus(text);
+        byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        boolean head = exchange.getRequestMethod().equals("HEAD");
+        exchange.sendResponseHeaders(200, head ? -1 : body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            if (!head) {
+                os.write(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,558 @@
+a. MulticastSender.java
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.util.concurrent.locks.LockSupport;
+
+// Publishes numbered messages to the multicast group 230.0.0.0:4446 through MulticastPublisher,
+// then keeps its retransmission service (TCP port 4447) up for a while so receivers can
+// fill any gaps.
+//
+//   java MulticastSender [count [size]]          default 1,000,000 messages of 32 bytes
+//   java -Dmcast.rate=200000 -Dmcast.interface=eth0 MulticastSender
+public class MulticastSender {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long count = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        int size = Math.max(8, args.length > 1 ? Integer.parseInt(args[1]) : 32);
+        long rate = Long.getLong("mcast.rate", 0); // messages per second, 0 = as fast as possible
+
+        NetworkInterface nif = NetworkInterface.getByName(System.getProperty("mcast.interface", "lo"));
+        InetSocketAddress group = new InetSocketAddress(System.getProperty("mcast.group", "230.0.0.0"), 4446);
+        try (MulticastPublisher publisher = new MulticastPublisher(group, nif, 4447)) {
+            System.out.println("Publishing " + count + " messages of " + size + " bytes to " + group);
+            byte[] message = new byte[size];
+            long start = System.nanoTime();
+            for (long i = 0; i < count; i++) {
+                // The first 8 bytes carry the message number so receivers can check for loss
+                for (int b = 0; b < 8; b++) {
+                    message[b] = (byte) (i >>> (56 - 8 * b));
+                }
+                publisher.publish(message, 0, size);
+                if (rate > 0) {
+                    long due = start + i * 1_000_000_000L / rate;
+                    long ahead = due - System.nanoTime();
+                    if (ahead > 0) {
+                        LockSupport.parkNanos(ahead);
+                    }
+                }
+            }
+            publisher.flush();
+            long micros = Math.max(1, (System.nanoTime() - start) / 1000);
+            System.out.println("Sent " + count + " messages in " + publisher.getSequence() + " datagrams, "
+                    + micros / 1000 + " ms (" + count * 1_000_000 / micros + " messages/s)");
+
+            // Leave time for receivers to request retransmissions
+            Thread.sleep(Long.getLong("mcast.linger", 10_000));
+            System.out.println(publisher.stats());
+        }
+    }
+}
+
+
+b. MulticastReceiver.java
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+
+// Joins 230.0.0.0:4446 through MulticastSubscriber and checks that the numbered messages from
+// MulticastSender arrive complete and in order, with gaps filled from the sender's TCP port 4447.
+//
+//   java MulticastReceiver [expectedCount]
+//   java -Dmcast.loss=0.01 MulticastReceiver      (discard 1% of datagrams to exercise recovery)
+public class MulticastReceiver {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long expected = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+
+        NetworkInterface nif = NetworkInterface.getByName(System.getProperty("mcast.interface", "lo"));
+        InetSocketAddress group = new InetSocketAddress(System.getProperty("mcast.group", "230.0.0.0"), 4446);
+        InetSocketAddress retransmitter = new InetSocketAddress(System.getProperty("mcast.source", "127.0.0.1"), 4447);
+
+        long[] state = {-1, 0, 0}; // last message number, messages received, out of order
+        MulticastSubscriber subscriber = new MulticastSubscriber(group, nif, retransmitter, 4096, (sequence, message) -> {
+            long number = message.getLong(message.position());
+            if (state[0] >= 0 && number != state[0] + 1) {
+                state[2]++;
+            }
+            state[0] = number;
+            state[1]++;
+        });
+        subscriber.start();
+        System.out.println("Joined multicast group: " + group);
+
+        // Run until everything arrived or nothing has arrived for five seconds
+        long last = -1;
+        long idleSince = System.currentTimeMillis();
+        while (subscriber.getMessageCount() < expected && System.currentTimeMillis() - idleSince < 5000) {
+            Thread.sleep(100);
+            if (subscriber.getMessageCount() != last) {
+                last = subscriber.getMessageCount();
+                idleSince = System.currentTimeMillis();
+            }
+        }
+        subscriber.close();
+        System.out.println("Received " + subscriber.getMessageCount() + " messages, last #" + state[0] + ", "
+                + state[2] + " out of sequence");
+        System.out.println(subscriber.stats());
+    }
+}
+
+
+c. MulticastPublisher.java
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.locks.LockSupport;
+
+// Multicast publisher that packs many small messages into each datagram.
+//
+// Datagram layout (big-endian):
+//   sequence(8) message count(2) reserved(2) then per message: length(2) bytes
+// A datagram is sent when the next message doesn't fit, on flush(), or once the oldest message
+// in it has waited mcast.lingerMicros (default 200). Sequence numbers count datagrams, so a
+// receiver sees a gap as a jump in sequence; when idle, an empty datagram goes out every
+// second so a lost final datagram is noticed too.
+//
+// Datagrams are built directly in a pre-allocated ring holding the last mcast.history (8192)
+// of them; a TCP retransmission service on retransmitPort answers
+//   request:  first sequence(8) count(4)
+//   reply:    per datagram, length(4) and the datagram, or length -1 if it is no longer held
+// so receivers can fill gaps without the publisher slowing down for them.
+public class MulticastPublisher implements Closeable {
+    private static final int HEADER = 12;
+
+    private final DatagramChannel channel;
+    private final InetSocketAddress group;
+    private final int datagramSize = Integer.getInteger("mcast.datagramSize", 1472); // fits a 1500-byte MTU
+    private final int history = Integer.getInteger("mcast.history", 8192);
+    private final long lingerNanos = Long.getLong("mcast.lingerMicros", 200) * 1000;
+    private final ByteBuffer[] ring;
+    private final ServerSocketChannel retransmitServer;
+    private final ConnectionDispatcher dispatcher = ConnectionDispatcher.fromSystemProperties("multicast-retransmit");
+    private volatile boolean running = true;
+
+    private long sequence;       // of the datagram being filled
+    private ByteBuffer current;
+    private int messages;        // in the current datagram
+    private long firstMessageNanos;
+    private long lastSendNanos = System.nanoTime();
+    private long datagramsResent;
+    private long requestsTooOld;
+
+    public MulticastPublisher(InetSocketAddress group, NetworkInterface nif, int retransmitPort) throws IOException {
+        if (Integer.bitCount(history) != 1) {
+            throw new IllegalArgumentException("mcast.history must be a power of 2: " + history);
+        }
+        this.group = group;
+        this.channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, nif);
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, Integer.getInteger("mcast.ttl", 1));
+        channel.setOption(StandardSocketOptions.SO_SNDBUF, 4 * 1024 * 1024);
+
+        ring = new ByteBuffer[history];
+        for (int i = 0; i < history; i++) {
+            ring[i] = ByteBuffer.allocateDirect(datagramSize);
+        }
+        startDatagram();
+
+        retransmitServer = ServerSocketChannel.open();
+        retransmitServer.bind(new InetSocketAddress(retransmitPort));
+        Thread acceptor = new Thread(this::acceptRetransmitRequests, "mcast-retransmit");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        Thread flusher = new Thread(this::flushLingering, "mcast-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // Adds one message; it goes out with the next datagram
+    public synchronized void publish(byte[] message, int offset, int length) throws IOException {
+        if (length > datagramSize - HEADER - 2) {
+            throw new IllegalArgumentException("message too large for one datagram: " + length);
+        }
+        if (current.remaining() < 2 + length) {
+            send();
+        }
+        if (messages == 0) {
+            firstMessageNanos = System.nanoTime();
+        }
+        current.putShort((short) length).put(message, offset, length);
+        messages++;
+    }
+
+    public synchronized void flush() throws IOException {
+        if (messages > 0) {
+            send();
+        }
+    }
+
+    // Number of datagrams sent so far
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    public synchronized String stats() {
+        return sequence + " datagrams sent, " + datagramsResent + " resent over TCP, "
+                + requestsTooOld + " requested after leaving the history";
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        running = false;
+        retransmitServer.close();
+        dispatcher.close();
+        channel.close();
+    }
+
+    private void startDatagram() {
+        current = ring[(int) sequence & (history - 1)];
+        current.clear();
+        current.position(HEADER);
+        messages = 0;
+    }
+
+    private void send() throws IOException {
+        current.putLong(0, sequence).putShort(8, (short) messages).putShort(10, (short) 0);
+        current.flip();
+        channel.send(current, group);
+        current.rewind(); // keep position 0 / limit = length for retransmission
+        lastSendNanos = System.nanoTime();
+        sequence++;
+        startDatagram();
+    }
+
+    private void flushLingering() {
+        while (running) {
+            LockSupport.parkNanos(lingerNanos);
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (messages > 0 && now - firstMessageNanos >= lingerNanos || now - lastSendNanos >= 1_000_000_000L) {
+                    try {
+                        send();
+                    } catch (IOException e) {
+                        if (running) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Copies datagram `seq` into dst; false if it has not been sent or has left the ring.
+    // The slot of seq == sequence - history already holds the datagram being built.
+    private synchronized boolean copyDatagram(long seq, ByteBuffer dst) {
+        if (seq >= sequence || seq <= sequence - history || seq < 0) {
+            requestsTooOld++;
+            return false;
+        }
+        ByteBuffer datagram = ring[(int) seq & (history - 1)];
+        for (int i = 0; i < datagram.limit(); i++) {
+            dst.put(datagram.get(i));
+        }
+        datagramsResent++;
+        return true;
+    }
+
+    private void acceptRetransmitRequests() {
+        try {
+            while (running) {
+                SocketChannel client = retransmitServer.accept();
+                dispatcher.dispatch(client.socket(), () -> serveRetransmits(client));
+            }
+        } catch (IOException e) {
+            if (running) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void serveRetransmits(SocketChannel client) {
+        ByteBuffer request = ByteBuffer.allocate(12);
+        ByteBuffer reply = ByteBuffer.allocateDirect(4 + datagramSize);
+        try (SocketChannel c = client) {
+            c.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            while (true) {
+                request.clear();
+                while (request.hasRemaining()) {
+                    if (c.read(request) < 0) {
+                        return;
+                    }
+                }
+                long first = request.getLong(0);
+                int count = request.getInt(8);
+                for (long seq = first; seq < first + count; seq++) {
+                    reply.clear();
+                    reply.position(4);
+                    boolean held = copyDatagram(seq, reply);
+                    reply.putInt(0, held ? reply.position() - 4 : -1);
+                    reply.flip();
+                    if (!held) {
+                        reply.limit(4);
+                    }
+                    while (reply.hasRemaining()) {
+                        c.write(reply);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // receiver went away
+        }
+    }
+}
+
+
+d. MulticastSubscriber.java
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+// Receiving side of MulticastPublisher.
+//
+// A receiver thread reads datagrams straight into a pre-allocated ring of direct buffers; a
+// consumer thread walks the ring, puts datagrams back in sequence order and hands each message
+// to the handler. Missing sequence numbers (dropped by the network, or by the receiver thread
+// when the ring is full) are fetched from the publisher's TCP retransmission service before
+// later datagrams are delivered, so the handler sees every message exactly once and in order.
+// A subscriber that joins late starts from the first datagram it sees.
+//
+// Nothing is allocated per datagram or per message: the handler gets a ring buffer whose
+// position and limit frame the message, valid only during the call.
+public class MulticastSubscriber implements Closeable {
+
+    public interface MessageHandler {
+        // Called on the consumer thread; sequence is the datagram the message came in
+        void onMessage(long sequence, ByteBuffer message);
+    }
+
+    private final DatagramChannel channel;
+    private final MembershipKey membership;
+    private final InetSocketAddress retransmitter;
+    private final MessageHandler handler;
+    private final int datagramSize = Integer.getInteger("mcast.datagramSize", 1472);
+    private final double simulatedLoss = Double.parseDouble(System.getProperty("mcast.loss", "0"));
+
+    private final ByteBuffer[] ring;
+    private final int mask;
+    private volatile long published; // datagrams written by the receiver thread
+    private volatile long consumed;  // datagrams processed by the consumer thread
+    private volatile boolean running = true;
+    private final Thread receiver;
+    private final Thread consumer;
+
+    // Consumer thread state
+    private long expected = -1;
+    private SocketChannel recovery;
+    private final ByteBuffer recoveryRequest = ByteBuffer.allocate(12);
+    private final ByteBuffer recoveryHeader = ByteBuffer.allocate(4);
+    private final ByteBuffer recoveryBuffer;
+
+    // Counters
+    private volatile long datagrams;
+    private volatile long messages;
+    private volatile long duplicates;
+    private volatile long gaps;
+    private volatile long recovered;
+    private volatile long unrecoverable;
+    private volatile long ringDrops;
+
+    public MulticastSubscriber(InetSocketAddress group, NetworkInterface nif, InetSocketAddress retransmitter,
+                               int ringSize, MessageHandler handler) throws IOException {
+        if (Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("ringSize must be a power of 2: " + ringSize);
+        }
+        this.retransmitter = retransmitter;
+        this.handler = handler;
+        this.channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        channel.setOption(StandardSocketOptions.SO_REUSEADDR, true); // several subscribers per host
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, 8 * 1024 * 1024);
+        channel.bind(new InetSocketAddress(group.getPort()));
+        this.membership = channel.join(group.getAddress(), nif);
+
+        ring = new ByteBuffer[ringSize];
+        for (int i = 0; i < ringSize; i++) {
+            ring[i] = ByteBuffer.allocateDirect(datagramSize);
+        }
+        mask = ringSize - 1;
+        recoveryBuffer = ByteBuffer.allocateDirect(datagramSize);
+
+        receiver = new Thread(this::receive, "mcast-receiver");
+        consumer = new Thread(this::consume, "mcast-consumer");
+    }
+
+    public void start() {
+        receiver.start();
+        consumer.start();
+    }
+
+    public long getMessageCount() {
+        return messages;
+    }
+
+    public String stats() {
+        return datagrams + " datagrams, " + messages + " messages, " + duplicates + " duplicates, " + gaps + " gaps, "
+                + recovered + " datagrams recovered over TCP, " + unrecoverable + " unrecoverable, "
+                + ringDrops + " dropped with the ring full";
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        membership.drop();
+        channel.close(); // unblocks the receiver
+        try {
+            consumer.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (recovery != null) {
+            recovery.close();
+        }
+    }
+
+    // Receiver thread: the only writer of `published`
+    private void receive() {
+        ByteBuffer overflow = ByteBuffer.allocateDirect(datagramSize);
+        try {
+            while (running) {
+                long slot = published;
+                boolean full = slot - consumed >= ring.length;
+                ByteBuffer buffer = full ? overflow : ring[(int) slot & mask];
+                buffer.clear();
+                channel.receive(buffer);
+                if (full) {
+                    ringDrops++; // consumer is behind; the gap will be recovered over TCP
+                    continue;
+                }
+                if (simulatedLoss > 0 && ThreadLocalRandom.current().nextDouble() < simulatedLoss) {
+                    continue;
+                }
+                buffer.flip();
+                published = slot + 1;
+            }
+        } catch (IOException e) {
+            if (running) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Consumer thread: the only writer of `consumed`
+    private void consume() {
+        int idle = 0;
+        while (running || consumed < published) {
+            long slot = consumed;
+            if (slot == published) {
+                if (++idle < 1000) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(50_000);
+                }
+                continue;
+            }
+            idle = 0;
+            ByteBuffer datagram = ring[(int) slot & mask];
+            if (datagram.remaining() >= 12) {
+                long sequence = datagram.getLong(0);
+                if (expected < 0) {
+                    expected = sequence;
+                }
+                if (sequence < expected) {
+                    duplicates++;
+                } else {
+                    if (sequence > expected) {
+                        gaps++;
+                        recover(expected, sequence);
+                    }
+                    deliver(datagram);
+                    expected = sequence + 1;
+                }
+            }
+            consumed = slot + 1;
+        }
+    }
+
+    // Fetches datagrams [from, to) from the publisher and delivers them
+    private void recover(long from, long to) {
+        try {
+            if (recovery == null) {
+                recovery = SocketChannel.open(retransmitter);
+                recovery.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+            recoveryRequest.clear();
+            recoveryRequest.putLong(from).putInt((int) Math.min(to - from, Integer.MAX_VALUE)).flip();
+            while (recoveryRequest.hasRemaining()) {
+                recovery.write(recoveryRequest);
+            }
+            for (long seq = from; seq < to; seq++) {
+                readFully(recoveryHeader.clear());
+                int length = recoveryHeader.getInt(0);
+                if (length < 0) {
+                    unrecoverable++;
+                    continue;
+                }
+                recoveryBuffer.clear().limit(length);
+                readFully(recoveryBuffer);
+                recoveryBuffer.flip();
+                recovered++;
+                deliver(recoveryBuffer);
+            }
+        } catch (IOException e) {
+            unrecoverable += to - from;
+            try {
+                if (recovery != null) {
+                    recovery.close();
+                }
+            } catch (IOException ignored) {
+            }
+            recovery = null;
+        }
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (recovery.read(buffer) < 0) {
+                throw new IOException("retransmission service closed the connection");
+            }
+        }
+    }
+
+    private void deliver(ByteBuffer datagram) {
+        datagrams++;
+        long sequence = datagram.getLong(0);
+        int count = datagram.getShort(8) & 0xFFFF;
+        int end = datagram.limit();
+        int position = 12;
+        for (int i = 0; i < count && position + 2 <= end; i++) {
+            int length = datagram.getShort(position) & 0xFFFF;
+            datagram.limit(position + 2 + length).position(position + 2);
+            messages++;
+            handler.onMessage(sequence, datagram);
+            position += 2 + length;
+            datagram.limit(end);
+        }
+        datagram.position(0);
+    }
+}
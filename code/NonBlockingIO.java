@@ -1,112 +1,668 @@
 a. NonBlockingServer.java
 
-  import java.io.IOException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+public class NonBlockingServer {
+    public static void main(String[] args) throws IOException {
+        // Number of selector threads; defaults to one per core
+        int selectorThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+
+        // One acceptor thread hands new connections to the selector threads, which keep them open
+        // and echo back everything they receive
+        Reactor reactor = new Reactor(new InetSocketAddress("localhost", 8080), selectorThreads, EchoHandler::new);
+        reactor.setMetrics(ServerMetrics.forServer("echo"));
+        reactor.start();
+        System.out.println("NonBlockingServer is listening on port 8080 with " + selectorThreads + " selector threads");
+    }
+
+    // Echo protocol: every byte read is written straight back to the same connection
+    static class EchoHandler implements ProtocolHandler {
+        @Override
+        public void onRead(Connection connection, ByteBuffer in) {
+            // Writes directly from the connection's read buffer; only bytes the socket
+            // could not take right now are copied into the connection's write buffer
+            connection.write(in);
+        }
+    }
+}
+
+b. NonBlockingClient.java
+
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+public class NonBlockingClient {
+    public static void main(String[] args) throws IOException {
+        // Define the server address (localhost on port 8080)
+        InetSocketAddress address = new InetSocketAddress("localhost", 8080);
+
+        // Open a SocketChannel and connect to the server
+        SocketChannel client = SocketChannel.open(address);
+
+        // Prepare the message to send to the server
+        String message = "Hello from client";
+
+        // Wrap the message bytes into a ByteBuffer for sending over the channel
+        ByteBuffer buffer = ByteBuffer.wrap(message.getBytes());
+
+        // Write the message to the server through the channel
+        client.write(buffer);
+
+        // Clear the buffer after writing (optional, as we're closing the channel next)
+        buffer.clear();
+
+        // Close the client channel after sending the message
+        client.close();
+    }
+}
+
+
+c. Reactor.java
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.Iterator;
-import java.util.Set;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
 
-public class NonBlockingServer {
-    public static void main(String[] args) throws IOException {
-        // Open a Selector for handling multiple channels in non-blocking mode
-        Selector selector = Selector.open();
+public class Reactor implements Closeable {
+    private static final long ACCEPT_BACKOFF_MILLIS = 100; // pause after accept() fails, e.g. with EMFILE
+
+    private final InetSocketAddress address;
+    private final Supplier<? extends ProtocolHandler> handlerFactory;
+    private final EventLoop[] loops;
+    private ServerSocketChannel serverChannel;
+    private Thread acceptor;
+    private volatile boolean running;
+    private int nextLoop;
+    private ServerMetrics metrics;
+    private SocketProfile socketProfile;
+
+    public Reactor(InetSocketAddress address, Supplier<? extends ProtocolHandler> handlerFactory) throws IOException {
+        this(address, Runtime.getRuntime().availableProcessors(), handlerFactory);
+    }
+
+    public Reactor(InetSocketAddress address, int selectorThreads, Supplier<? extends ProtocolHandler> handlerFactory) throws IOException {
+        if (selectorThreads < 1) {
+            throw new IllegalArgumentException("selectorThreads must be at least 1: " + selectorThreads);
+        }
+        this.address = address;
+        this.handlerFactory = handlerFactory;
+        this.loops = new EventLoop[selectorThreads];
+        for (int i = 0; i < selectorThreads; i++) {
+            loops[i] = new EventLoop("reactor-selector-" + i);
+        }
+    }
 
-        // Open a ServerSocketChannel to listen for incoming client connections
-        ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+    public void start() throws IOException {
+        // The acceptor uses a plain blocking accept() on its own thread, so the selector
+        // threads only ever deal with established connections
+        if (socketProfile == null) {
+            socketProfile = SocketProfile.fromSystemProperties();
+        }
+        if (metrics == null) {
+            metrics = ServerMetrics.forServer("reactor");
+        }
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        socketProfile.bind(serverChannel, address, 1024);
+        running = true;
 
-        // Bind the server socket to localhost on port 8080
-        serverSocketChannel.bind(new InetSocketAddress("localhost", 8080));
+        for (EventLoop loop : loops) {
+            loop.start();
+        }
+        acceptor = new Thread(this::acceptLoop, "reactor-acceptor");
+        acceptor.start();
+    }
 
-        // Configure the server socket channel to operate in non-blocking mode
-        serverSocketChannel.configureBlocking(false);
+    // Options for the listening socket and every accepted one; set before start(). Defaults to
+    // SocketProfile.fromSystemProperties().
+    public void setSocketProfile(SocketProfile socketProfile) {
+        this.socketProfile = socketProfile;
+    }
 
-        // Register the server socket channel with the selector for "accept" operations
-        serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+    // Where connections record bytes, errors and read-callback latency; set before start()
+    public void setMetrics(ServerMetrics metrics) {
+        this.metrics = metrics;
+    }
 
-        // Infinite loop to continuously handle incoming events
-        while (true) {
-            // Block until at least one channel is ready for an operation
-            selector.select();
+    // Port actually bound, useful when the reactor was started on port 0
+    public int getLocalPort() {
+        return serverChannel.socket().getLocalPort();
+    }
 
-            // Get the set of keys corresponding to the channels that are ready
-            Set<SelectionKey> selectedKeys = selector.selectedKeys();
+    private void acceptLoop() {
+        while (running) {
+            SocketChannel client;
+            try {
+                client = serverChannel.accept();
+            } catch (ClosedChannelException e) {
+                break; // server channel closed by close()
+            } catch (IOException e) {
+                // Usually out of file descriptors (EMFILE): accept() would fail again at once, so
+                // pause instead of spinning, and let closing connections free some up
+                if (running) {
+                    System.err.println("accept failed, retrying in " + ACCEPT_BACKOFF_MILLIS + " ms: " + e);
+                    try {
+                        Thread.sleep(ACCEPT_BACKOFF_MILLIS);
+                    } catch (InterruptedException ie) {
+                        break;
+                    }
+                }
+                continue;
+            }
+            try {
+                client.configureBlocking(false);
+                client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                socketProfile.configure(client);
+                metrics.accepted();
 
-            // Use an iterator to process each key
-            Iterator<SelectionKey> it = selectedKeys.iterator();
+                // Spread connections round-robin over the selector threads
+                EventLoop loop = loops[nextLoop];
+                nextLoop = (nextLoop + 1) % loops.length;
+                loop.register(client, handlerFactory.get(), metrics);
+            } catch (IOException e) {
+                // Typically reset by the peer before it could be set up; it must not keep its descriptor
+                metrics.error();
+                try {
+                    client.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
 
-            while (it.hasNext()) {
-                SelectionKey key = it.next();
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+        for (EventLoop loop : loops) {
+            loop.shutdown();
+        }
+    }
 
-                // Check if the key indicates that a new client connection is ready to be accepted
-                if (key.isAcceptable()) {
-                    // Accept the incoming client connection
-                    ServerSocketChannel server = (ServerSocketChannel) key.channel();
-                    SocketChannel client = server.accept();
+    // A selector thread: owns one Selector and every connection registered with it.
+    // Other threads never touch those connections directly; they hand it tasks instead.
+    // It also drives the idle reaper for its connections (see IdleReaper, -Didle.*).
+    static final class EventLoop extends Thread {
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final IdleReaper reaper = IdleReaper.fromSystemProperties();
+        private volatile boolean running = true;
 
-                    // Configure the client socket channel to operate in non-blocking mode
-                    client.configureBlocking(false);
+        EventLoop(String name) throws IOException {
+            super(name);
+            this.selector = Selector.open();
+        }
 
-                    // Register the client channel with the selector for "read" operations
-                    client.register(selector, SelectionKey.OP_READ);
-                } 
-                // Check if the key indicates that data is available to be read from a client
-                else if (key.isReadable()) {
-                    // Get the client channel and read data into a buffer
-                    SocketChannel client = (SocketChannel) key.channel();
-                    ByteBuffer buffer = ByteBuffer.allocate(256); // Allocate a buffer of size 256 bytes
+        boolean inEventLoop() {
+            return Thread.currentThread() == this;
+        }
 
-                    // Read data from the client into the buffer
-                    client.read(buffer);
+        // Runs the task on this selector thread, waking it up if it is blocked in select()
+        void execute(Runnable task) {
+            tasks.add(task);
+            if (!inEventLoop()) {
+                selector.wakeup();
+            }
+        }
 
-                    // Prepare the buffer for reading by flipping it
-                    buffer.flip();
+        void register(SocketChannel channel, ProtocolHandler handler, ServerMetrics metrics) {
+            execute(() -> {
+                try {
+                    SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                    Connection connection = new Connection(this, channel, key, handler, metrics, reaper);
+                    key.attach(connection);
+                    connection.open();
+                } catch (IOException e) {
+                    closeQuietly(channel);
+                }
+            });
+        }
 
-                    // Convert the buffer's content to a string and print it
-                    System.out.println(new String(buffer.array()).trim());
+        void shutdown() {
+            running = false;
+            selector.wakeup();
+        }
 
-                    // Close the client connection after reading the data
-                    client.close();
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    // Wake up every tick while there are deadlines to check. Polling straight after
+                    // select also refreshes the clock the connections' activity marks read.
+                    selector.select(reaper.hasTimers() ? reaper.tickMillis() : 0);
+                    reaper.poll(System.currentTimeMillis());
+                    processSelectedKeys();
+                    runTasks();
+                } catch (IOException e) {
+                    e.printStackTrace();
                 }
+            }
 
-                // Remove the processed key to avoid reprocessing it
+            // Close every connection still owned by this thread
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    ((Connection) key.attachment()).close();
+                }
+            }
+            closeQuietly(selector);
+        }
+
+        private void processSelectedKeys() {
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey key = it.next();
                 it.remove();
+
+                Connection connection = (Connection) key.attachment();
+                try {
+                    // Drain pending output first so a connection that was stalled on a
+                    // full socket buffer can start reading again
+                    if (key.isValid() && key.isWritable()) {
+                        connection.handleWrite();
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        connection.handleRead();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    connection.closeOnError();
+                }
+            }
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        private static void closeQuietly(Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
             }
         }
     }
 }
 
-b. NonBlockingClient.java
+
+d. Connection.java
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 
-public class NonBlockingClient {
-    public static void main(String[] args) throws IOException {
-        // Define the server address (localhost on port 8080)
-        InetSocketAddress address = new InetSocketAddress("localhost", 8080);
+public class Connection {
+    static final int READ_BUFFER_SIZE = 8192;
+    static final int MAX_READ_BUFFER_SIZE = 1024 * 1024;
+    static final int WRITE_HIGH_WATER_MARK = 256 * 1024;
+    static final int MAX_PENDING_BYTES = 4 * 1024 * 1024;
 
-        // Open a SocketChannel and connect to the server
-        SocketChannel client = SocketChannel.open(address);
+    private final Reactor.EventLoop loop;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final ProtocolHandler handler;
+    private final ServerMetrics metrics;
+    private final IdleReaper.Deadlines deadlines;
 
-        // Prepare the message to send to the server
-        String message = "Hello from client";
+    // Both buffers live as long as the connection and are only touched by its selector thread.
+    // readBuffer is kept in "fill" mode between reads; writeBuffer holds bytes the socket
+    // has not accepted yet, also in "fill" mode.
+    private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private ByteBuffer writeBuffer;
+    private volatile int pendingBytes;
+    private boolean closeAfterWrite;
+    private boolean opened; // counted in metrics.opened(), so close() must count it closed
+    private boolean closed;
+    private Object attachment;
+    private Filter filter;
 
-        // Wrap the message bytes into a ByteBuffer for sending over the channel
-        ByteBuffer buffer = ByteBuffer.wrap(message.getBytes());
+    // Optional layer between the protocol handler and the socket, such as TLS. Handler writes
+    // go through write(), which passes them to the filter; the filter sends the bytes it
+    // produces with writeRaw().
+    public interface Filter {
+        void write(Connection connection, ByteBuffer src) throws IOException;
 
-        // Write the message to the server through the channel
-        client.write(buffer);
+        // Called by closeAfterWrite() so the filter can send its own closing bytes
+        default void closeOutbound(Connection connection) throws IOException {
+        }
+    }
 
-        // Clear the buffer after writing (optional, as we're closing the channel next)
-        buffer.clear();
+    Connection(Reactor.EventLoop loop, SocketChannel channel, SelectionKey key, ProtocolHandler handler, ServerMetrics metrics,
+               IdleReaper reaper) {
+        this.loop = loop;
+        this.channel = channel;
+        this.key = key;
+        this.handler = handler;
+        this.metrics = metrics;
+        this.deadlines = reaper.register(reason -> close()); // reaped on this connection's selector thread
+    }
 
-        // Close the client channel after sending the message
-        client.close();
+    public SocketAddress getRemoteAddress() {
+        try {
+            return channel.getRemoteAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Per-connection protocol state, for handlers shared between connections
+    public Object attachment() {
+        return attachment;
+    }
+
+    public void attach(Object attachment) {
+        this.attachment = attachment;
+    }
+
+    // Bytes queued for this connection that the socket has not accepted yet.
+    // Safe to read from any thread, e.g. to spot slow consumers.
+    public int pendingBytes() {
+        return pendingBytes;
+    }
+
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    // Runs the task on the selector thread that owns this connection
+    public void execute(Runnable task) {
+        loop.execute(task);
+    }
+
+    // Selector thread only, normally from ProtocolHandler.onOpen
+    public void setFilter(Filter filter) {
+        this.filter = filter;
+    }
+
+    // Queues src for sending. May be called from any thread; the buffer's remaining bytes
+    // belong to the connection from here on, so pass a duplicate() of shared buffers.
+    public void write(ByteBuffer src) {
+        if (!loop.inEventLoop()) {
+            loop.execute(() -> write(src));
+            return;
+        }
+        if (closed || closeAfterWrite) {
+            return;
+        }
+        if (filter == null) {
+            writeRaw(src);
+            return;
+        }
+        try {
+            filter.write(this, src);
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    // Sends bytes to the socket as they are, bypassing any filter. Selector thread only.
+    public void writeRaw(ByteBuffer src) {
+        if (closed) {
+            return;
+        }
+        try {
+            // Fast path: nothing queued, so try the socket directly without copying
+            if (writeBuffer == null || writeBuffer.position() == 0) {
+                metrics.wrote(channel.write(src));
+            }
+            if (src.hasRemaining()) {
+                queue(src);
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    // Closes the connection once everything written so far has reached the socket
+    public void closeAfterWrite() {
+        if (!loop.inEventLoop()) {
+            loop.execute(this::closeAfterWrite);
+            return;
+        }
+        if (closed || closeAfterWrite) {
+            return;
+        }
+        if (filter != null) {
+            try {
+                filter.closeOutbound(this);
+            } catch (IOException e) {
+                close();
+                return;
+            }
+        }
+        if (writeBuffer == null || writeBuffer.position() == 0) {
+            close();
+        } else {
+            closeAfterWrite = true;
+        }
+    }
+
+    public void close() {
+        if (!loop.inEventLoop()) {
+            loop.execute(this::close);
+            return;
+        }
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (opened) {
+            metrics.closed();
+        }
+        deadlines.cancel();
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        handler.onClose(this);
+    }
+
+    void closeOnError() {
+        if (!closed) {
+            metrics.error();
+        }
+        close();
+    }
+
+    void open() throws IOException {
+        handler.onOpen(this);
+        // After onOpen, so a handler that fails or closes the connection there is never counted
+        if (!closed) {
+            opened = true;
+            metrics.opened();
+        }
+    }
+
+    void handleRead() throws IOException {
+        int n = channel.read(readBuffer);
+        if (n < 0) {
+            close();
+            return;
+        }
+        if (n == 0) {
+            return;
+        }
+
+        metrics.read(n);
+        deadlines.readActivity();
+
+        readBuffer.flip();
+        long start = System.nanoTime();
+        handler.onRead(this, readBuffer);
+        metrics.handled(start);
+        if (closed) {
+            return;
+        }
+
+        if (!readBuffer.hasRemaining()) {
+            readBuffer.clear();
+        } else if (readBuffer.position() == 0 && readBuffer.limit() == readBuffer.capacity()) {
+            // The handler could not consume anything from a full buffer: the message is
+            // larger than the buffer, so grow it (up to a limit) instead of dropping data
+            if (readBuffer.capacity() >= MAX_READ_BUFFER_SIZE) {
+                close();
+                return;
+            }
+            ByteBuffer bigger = ByteBuffer.allocate(readBuffer.capacity() * 2);
+            bigger.put(readBuffer);
+            readBuffer = bigger;
+        } else {
+            readBuffer.compact();
+        }
+    }
+
+    void handleWrite() throws IOException {
+        writeBuffer.flip();
+        int written = channel.write(writeBuffer);
+        metrics.wrote(written);
+        writeBuffer.compact();
+        pendingBytes = writeBuffer.position();
+
+        // Any progress restarts the write-stall clock; it only runs while output is waiting
+        if (written > 0 || pendingBytes == 0) {
+            deadlines.writeFinished();
+        }
+        if (pendingBytes > 0) {
+            deadlines.writeStarted();
+        }
+
+        if (pendingBytes == 0) {
+            // Everything flushed: stop waiting for OP_WRITE and resume reading
+            key.interestOps(SelectionKey.OP_READ);
+            if (closeAfterWrite) {
+                close();
+            }
+        } else if (pendingBytes < WRITE_HIGH_WATER_MARK) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    // Copies what the socket could not take into the write buffer and waits for OP_WRITE
+    private void queue(ByteBuffer src) {
+        int needed = (writeBuffer == null ? 0 : writeBuffer.position()) + src.remaining();
+        if (needed > MAX_PENDING_BYTES) {
+            // Peer is not reading; drop it rather than buffer without bound
+            close();
+            return;
+        }
+        if (writeBuffer == null || writeBuffer.remaining() < src.remaining()) {
+            int capacity = writeBuffer == null ? READ_BUFFER_SIZE : writeBuffer.capacity();
+            while (capacity < needed) {
+                capacity *= 2;
+            }
+            ByteBuffer bigger = ByteBuffer.allocate(capacity);
+            if (writeBuffer != null) {
+                writeBuffer.flip();
+                bigger.put(writeBuffer);
+            }
+            writeBuffer = bigger;
+        }
+        writeBuffer.put(src);
+        pendingBytes = writeBuffer.position();
+        deadlines.writeStarted();
+
+        // Backpressure: above the high-water mark stop reading from this peer until
+        // its output drains, so a client that never reads cannot make us buffer forever
+        if (pendingBytes >= WRITE_HIGH_WATER_MARK) {
+            key.interestOps(SelectionKey.OP_WRITE);
+        } else {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+}
+
+
+e. ProtocolHandler.java
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public interface ProtocolHandler {
+    // Called on the selector thread once the connection is registered
+    default void onOpen(Connection connection) throws IOException {
+    }
+
+    // Called with the connection's read buffer flipped for reading. Consume as many
+    // complete messages as are available; unread bytes are kept for the next call.
+    void onRead(Connection connection, ByteBuffer in) throws IOException;
+
+    // Called once when the connection is closed by either side
+    default void onClose(Connection connection) {
+    }
+}
+
+
+f. BufferPool.java
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Free list of same-sized buffers, so per-connection or per-packet buffers (direct ones in
+// particular, which are expensive to allocate and to free) can be reused. Thread-safe.
+public class BufferPool {
+    private final int bufferSize;
+    private final int maxPooled;
+    private final boolean direct;
+    private final Queue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    public BufferPool(int bufferSize, int maxPooled, boolean direct) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+        this.direct = direct;
+    }
+
+    public int bufferSize() {
+        return bufferSize;
+    }
+
+    // A cleared buffer of bufferSize bytes, from the pool if one is free
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            return direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+        }
+        pooled.decrementAndGet();
+        return buffer;
+    }
+
+    // Returns a buffer to the pool. Buffers of another size (e.g. ones that were grown) and
+    // buffers beyond maxPooled are left to the garbage collector.
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() != bufferSize || buffer.isDirect() != direct) {
+            return;
+        }
+        if (pooled.incrementAndGet() <= maxPooled) {
+            buffer.clear();
+            free.offer(buffer);
+        } else {
+            pooled.decrementAndGet();
+        }
     }
 }
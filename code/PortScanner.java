@@ -0,0 +1,314 @@
+a. PortScanner.java
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+// Finds which of the first 1,024 ports seem to be hosting TCP servers on a host.
+// The ports are probed in parallel by ScanEngine instead of one blocking Socket at a time.
+//
+//   java PortScanner [host]
+//   java -Dscan.concurrency=2000 -Dscan.timeout=500 -Dscan.rate=10000 PortScanner example.com
+public class PortScanner {
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        // Define the range of ports to scan (1 to 1024)
+        int startPort = 1;
+        int endPort = 1024;
+
+        InetAddress address;
+        try {
+            address = InetAddress.getByName(host);
+        } catch (UnknownHostException e) {
+            System.out.println("Unknown host: " + e.getMessage());
+            return;
+        }
+
+        ScanEngine engine = ScanEngine.fromSystemProperties();
+        ScanEngine.Summary summary = engine.scan(address, startPort, endPort, (port, state, micros) -> {
+            if (state == ScanEngine.State.OPEN) {
+                System.out.println("Server is running on port " + port + " of " + host + ".");
+            } else {
+                System.out.println("No server is running on port " + port + " of " + host + " (" + state + ").");
+            }
+        });
+        System.out.println(summary);
+    }
+}
+
+
+b. HighPortScanner.java
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+// Finds which of the ports at or above 1,024 seem to be hosting TCP servers.
+// Only open ports are printed; a full scan of localhost takes a few seconds.
+//
+//   java HighPortScanner [host [startPort [endPort]]]
+public class HighPortScanner {
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        // Define the range of ports to scan (1024 to 65535)
+        int startPort = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        int endPort = args.length > 2 ? Integer.parseInt(args[2]) : 65535;
+
+        ScanEngine engine = ScanEngine.fromSystemProperties();
+        ScanEngine.Summary summary = engine.scan(InetAddress.getByName(host), startPort, endPort, (port, state, micros) -> {
+            if (state == ScanEngine.State.OPEN) {
+                System.out.println("Server is running on port " + port + " of " + host + ".");
+            }
+        });
+        System.out.println(summary);
+    }
+}
+
+
+c. ScanEngine.java
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NoRouteToHostException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+// TCP connect scanner. Up to `concurrency` non-blocking connects are in flight at once on one
+// Selector; each either completes (OPEN), is refused (CLOSED), or hits its deadline (FILTERED:
+// nothing answered, usually a firewall dropping packets). New connects are started as old ones
+// finish, optionally paced to `ratePerSecond`, and every result is passed to the listener as
+// soon as it is known.
+//
+// Every attempt holds a file descriptor. If the process runs out ("Too many open files"), the
+// port is retried once some attempts have finished, and the window shrinks for the rest of the
+// scan instead of failing it.
+//
+// Properties: scan.concurrency (default 1000, capped below the process's file descriptor limit),
+// scan.timeout in ms (default 1000), scan.rate in connects per second (default 0 = unlimited).
+public class ScanEngine {
+
+    public enum State {
+        OPEN,     // connection accepted
+        CLOSED,   // connection refused (RST)
+        FILTERED, // no answer before the deadline
+        ERROR     // anything else, e.g. no route to host
+    }
+
+    public interface Listener {
+        // Called on the scanning thread; micros is the time from connect() to the result
+        void onResult(int port, State state, long micros);
+    }
+
+    public static final class Summary {
+        public final int open;
+        public final int closed;
+        public final int filtered;
+        public final int errors;
+        public final long elapsedMillis;
+
+        Summary(int[] counts, long elapsedMillis) {
+            this.open = counts[State.OPEN.ordinal()];
+            this.closed = counts[State.CLOSED.ordinal()];
+            this.filtered = counts[State.FILTERED.ordinal()];
+            this.errors = counts[State.ERROR.ordinal()];
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return (open + closed + filtered + errors) + " ports scanned in " + elapsedMillis + " ms: "
+                    + open + " open, " + closed + " closed, " + filtered + " filtered, " + errors + " errors";
+        }
+    }
+
+    private static final class Attempt {
+        final int port;
+        final SocketChannel channel;
+        final long started;
+        final long deadline;
+        boolean done;
+
+        Attempt(int port, SocketChannel channel, long started, long deadline) {
+            this.port = port;
+            this.channel = channel;
+            this.started = started;
+            this.deadline = deadline;
+        }
+    }
+
+    private final int concurrency;
+    private final long timeoutNanos;
+    private final long intervalNanos; // between connect starts, 0 = no pacing
+
+    public ScanEngine(int concurrency, long timeoutMillis, int ratePerSecond) {
+        if (concurrency < 1 || timeoutMillis < 1) {
+            throw new IllegalArgumentException("concurrency and timeout must be at least 1");
+        }
+        this.concurrency = concurrency;
+        this.timeoutNanos = timeoutMillis * 1_000_000;
+        this.intervalNanos = ratePerSecond > 0 ? 1_000_000_000L / ratePerSecond : 0;
+    }
+
+    public static ScanEngine fromSystemProperties() {
+        return new ScanEngine(Integer.getInteger("scan.concurrency", defaultConcurrency()),
+                Long.getLong("scan.timeout", 1000), Integer.getInteger("scan.rate", 0));
+    }
+
+    // 1000, or fewer if the descriptors still free (minus headroom for everything else the
+    // process opens) would not cover that many sockets
+    static int defaultConcurrency() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (!(os instanceof com.sun.management.UnixOperatingSystemMXBean)) {
+            return 1000;
+        }
+        com.sun.management.UnixOperatingSystemMXBean unix = (com.sun.management.UnixOperatingSystemMXBean) os;
+        long max = unix.getMaxFileDescriptorCount();
+        long free = max - unix.getOpenFileDescriptorCount() - Math.max(64, max / 8);
+        return (int) Math.max(1, Math.min(1000, free));
+    }
+
+    // Scans fromPort..toPort (inclusive) on the calling thread and returns when every port has a result
+    public Summary scan(InetAddress host, int fromPort, int toPort, Listener listener) throws IOException {
+        long start = System.nanoTime();
+        int[] counts = new int[State.values().length];
+        // Every attempt gets the same timeout, so deadlines expire in start order
+        ArrayDeque<Attempt> inFlight = new ArrayDeque<>();
+        int active = 0;
+        int window = concurrency; // shrinks if the process runs out of file descriptors
+        boolean backedOff = false; // out of descriptors once already with nothing in flight
+        int nextPort = fromPort;
+        long nextStart = start;
+
+        try (Selector selector = Selector.open()) {
+            while (nextPort <= toPort || active > 0) {
+                long now = System.nanoTime();
+
+                // Start connects while the window and the rate limit allow
+                while (nextPort <= toPort && active < window && now - nextStart >= 0) {
+                    int port = nextPort++;
+                    nextStart = Math.max(nextStart + intervalNanos, now); // no catching up after a stall
+                    SocketChannel channel;
+                    try {
+                        channel = SocketChannel.open();
+                    } catch (IOException e) {
+                        // Retry this port after the next select: in-flight attempts give back their
+                        // descriptors as they finish, and channels closed while registered only
+                        // release theirs when the selector deregisters them
+                        if (isOutOfFiles(e) && (active > 0 || !backedOff)) {
+                            backedOff = active == 0;
+                            nextPort = port;
+                            window = Math.max(1, active * 3 / 4);
+                            break;
+                        }
+                        finish(new Attempt(port, null, now, now), stateOf(e), listener, counts);
+                        continue;
+                    }
+                    backedOff = false;
+                    Attempt attempt = new Attempt(port, channel, now, now + timeoutNanos);
+                    try {
+                        channel.configureBlocking(false);
+                        // Abort with RST on close so open ports don't leave TIME_WAIT sockets behind
+                        channel.setOption(StandardSocketOptions.SO_LINGER, 0);
+                        if (channel.connect(new InetSocketAddress(host, port))) {
+                            finish(attempt, State.OPEN, listener, counts);
+                            continue;
+                        }
+                        channel.register(selector, SelectionKey.OP_CONNECT, attempt);
+                        inFlight.add(attempt);
+                        active++;
+                    } catch (IOException e) {
+                        if (isOutOfFiles(e) && (active > 0 || !backedOff)) {
+                            // connect() can need descriptors of its own; same back-off as open()
+                            closeQuietly(channel);
+                            backedOff = active == 0;
+                            nextPort = port;
+                            window = Math.max(1, active * 3 / 4);
+                            break;
+                        }
+                        finish(attempt, stateOf(e), listener, counts);
+                    }
+                }
+
+                long wait = timeoutNanos;
+                Attempt oldest = inFlight.peek();
+                if (oldest != null) {
+                    wait = oldest.deadline - now;
+                }
+                if (nextPort <= toPort && active < window) {
+                    wait = Math.min(wait, nextStart - now);
+                }
+                if (wait > 0) {
+                    selector.select(Math.max(1, wait / 1_000_000));
+                } else {
+                    selector.selectNow();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Attempt attempt = (Attempt) key.attachment();
+                    State state;
+                    try {
+                        state = attempt.channel.finishConnect() ? State.OPEN : null;
+                    } catch (IOException e) {
+                        state = stateOf(e);
+                    }
+                    if (state != null) {
+                        finish(attempt, state, listener, counts);
+                        active--;
+                    }
+                }
+
+                // Expire attempts past their deadline; finished ones are dropped on the way
+                now = System.nanoTime();
+                while (!inFlight.isEmpty() && (inFlight.peek().done || inFlight.peek().deadline - now <= 0)) {
+                    Attempt attempt = inFlight.poll();
+                    if (!attempt.done) {
+                        finish(attempt, State.FILTERED, listener, counts);
+                        active--;
+                    }
+                }
+            }
+        }
+        return new Summary(counts, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void finish(Attempt attempt, State state, Listener listener, int[] counts) {
+        attempt.done = true;
+        if (attempt.channel != null) {
+            closeQuietly(attempt.channel);
+        }
+        counts[state.ordinal()]++;
+        listener.onResult(attempt.port, state, (System.nanoTime() - attempt.started) / 1000);
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // EMFILE/ENFILE: there is no portable errno in Java, only the message
+    private static boolean isOutOfFiles(IOException e) {
+        String message = e.getMessage();
+        return message != null && message.contains("Too many open files");
+    }
+
+    private static State stateOf(IOException e) {
+        if (e instanceof ConnectException && !(e instanceof NoRouteToHostException)) {
+            return State.CLOSED;
+        }
+        return State.ERROR;
+    }
+}
@@ -9,53 +9,46 @@ These two components work together to establish secure communication over SSL/TL
   a. SecureServer.java
 
 import java.io.*;
-import java.security.KeyStore;
+import java.net.InetSocketAddress;
 import javax.net.ssl.*;
 
 public class SecureServer {
     public static void main(String[] args) throws Exception {
-        // Load the keystore 
+        // Load the keystore and build the SSLContext (once per process, see SecureTransport)
         // A keystore is essentially a database (or file) that stores:
         // Private Keys : Used to prove the identity of an entity (e.g., a server or client).
         // Certificates : Contain public keys and are used to verify the identity of entities.
-
-        KeyStore keyStore = KeyStore.getInstance("JKS");
-        String keystorePath = "/home/sharat/Desktop/serverkeystore.jks";
-        try (FileInputStream keyStoreFis = new FileInputStream(keystorePath)) {
-            keyStore.load(keyStoreFis, "password".toCharArray());//Decrypts and loads the keystore contents
-        }
-
-        // Initialize the KeyManagerFactory with the keystore
-        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());//manages the server's private key and certificate(s)
-        kmf.init(keyStore, "password".toCharArray());//Initializes the factory with the loaded keystore and the private key password ("password")
-
-        // Initialize the SSLContext with the KeyManagers from the KeyManagerFactory
-        SSLContext sslContext = SSLContext.getInstance("TLS");//Creates an SSLContext instance for the TLS protocol
-        sslContext.init(kmf.getKeyManagers(), null, null);
+        // The server-side session cache in this context is what lets returning clients resume.
+        String keystorePath = System.getProperty("tls.keystore", "/home/sharat/Desktop/serverkeystore.jks");
+        SSLContext sslContext = SecureTransport.serverContext(keystorePath, "password".toCharArray());
 
         // Create SSL server socket factory from SSLContext
         SSLServerSocketFactory sslServerSocketFactory = sslContext.getServerSocketFactory();//used to create SSL/TLS-enabled server sockets
 
         // Create SSL server socket
         int serverPort = 8443;
-        SSLServerSocket serverSocket = (SSLServerSocket) sslServerSocketFactory.createServerSocket(serverPort);//server is ready to accept client connections
+        SocketProfile profile = SocketProfile.fromSystemProperties();
+        SSLServerSocket serverSocket = profile.bind((SSLServerSocket) sslServerSocketFactory.createServerSocket(),
+                new InetSocketAddress(serverPort), 50);//server is ready to accept client connections
 
         // Enable client authentication if needed
         serverSocket.setNeedClientAuth(false);//client does not need to prove its identity to the server
         System.out.println("Server started. Listening on port " + serverPort + "...");
+        ConnectionDispatcher dispatcher = ConnectionDispatcher.fromSystemProperties("secure");
 
         // Server loop
         while (true) {
             // Accept client connection
             SSLSocket clientSocket = (SSLSocket) serverSocket.accept();
+            profile.configure(clientSocket);
 
-            // Handle client communication in a separate thread or process
-            new Thread(new ClientHandler(clientSocket)).start();
+            // Handle client communication on the configured dispatch strategy
+            dispatcher.dispatch(clientSocket, new ClientHandler(clientSocket));
         }
     }
 
     // Example client handler thread
-    static class ClientHandler extends Thread {
+    static class ClientHandler implements Runnable {
         private SSLSocket clientSocket;
 
         public ClientHandler(SSLSocket clientSocket) {
@@ -64,10 +57,15 @@ public class SecureServer {
 
         @Override
         public void run() {
+            // Registered before the handshake, so a client that stalls it is closed too
+            IdleReaper.Deadlines deadlines = IdleReaper.shared().register(clientSocket);
             try {
+                // Handshake up front so it can be counted as full or resumed
+                SecureTransport.handshake(clientSocket);
+
                 // Read from and write to the client socket as needed
-                BufferedReader reader = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(clientSocket.getOutputStream()));
+                BufferedReader reader = new BufferedReader(new InputStreamReader(deadlines.track(clientSocket.getInputStream())));
+                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(deadlines.track(clientSocket.getOutputStream())));
 
                 // Example: Echo server functionality
                 String line;
@@ -79,8 +77,11 @@ public class SecureServer {
 
                 // Close client socket
                 clientSocket.close();
+                System.out.println(SecureTransport.stats());
             } catch (IOException e) {
                 e.printStackTrace();
+            } finally {
+                deadlines.cancel();
             }
         }
     }
@@ -92,45 +93,41 @@ b. SecureClient.java
 
 import javax.net.ssl.*;
 import java.io.*;
-import java.security.KeyStore;
 
 public class SecureClient {
     public static void main(String[] args) throws Exception {
-        // Load the truststore
-        KeyStore trustStore = KeyStore.getInstance("JKS");
-        String keystorePath = "/home/sharat/Desktop/clienttruststore.jks";
-        try (FileInputStream trustStoreFis = new FileInputStream(keystorePath)) {
-            trustStore.load(trustStoreFis, "truststorepassword".toCharArray());
-        }
-
-        // Initialize the TrustManagerFactory with the truststore
-        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
-        tmf.init(trustStore);
-
-        // Initialize the SSLContext with the trust managers
-        SSLContext sslContext = SSLContext.getInstance("TLS");
-        sslContext.init(null, tmf.getTrustManagers(), null);
+        // Load the truststore and build the SSLContext once; reusing the context keeps its
+        // client session cache, so later connections to the same server can resume
+        String keystorePath = System.getProperty("tls.truststore", "/home/sharat/Desktop/clienttruststore.jks");
+        SSLContext sslContext = SecureTransport.clientContext(keystorePath, "truststorepassword".toCharArray());
 
         // Create an SSLSocketFactory from the SSLContext
         SSLSocketFactory factory = sslContext.getSocketFactory();
 
-        // Create an SSLSocket connected to the specified host and port
-        SSLSocket socket = (SSLSocket) factory.createSocket("localhost", 8443);
+        // Connect several times (args[0], default 1): only the first connection needs a full handshake
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        for (int i = 0; i < connections; i++) {
+            // Create an SSLSocket connected to the specified host and port. The host and port
+            // are the key the client session cache uses to find a session to resume.
+            SSLSocket socket = (SSLSocket) factory.createSocket("localhost", 8443);
+            SecureTransport.handshake(socket);
 
-        // Initialize output and input streams for communication
-        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            // Initialize output and input streams for communication
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
 
-        // Send a message to the server
-        out.println("Hello, secure server!");
+            // Send a message to the server
+            out.println("Hello, secure server!");
 
-        // Read and print the server's response
-        System.out.println("Server says: " + in.readLine());
+            // Read and print the server's response
+            System.out.println("Server says: " + in.readLine());
 
-        // Close the streams and the socket
-        out.close();
-        in.close();
-        socket.close();
+            // Close the streams and the socket
+            out.close();
+            in.close();
+            socket.close();
+        }
+        System.out.println(SecureTransport.stats());
     }
 }
 
@@ -140,24 +137,13 @@ c. SecureClientEventHandler.java
 
 import javax.net.ssl.*;
 import java.io.*;
-import java.security.KeyStore;
 
 public class SecureClient {
     public static void main(String[] args) throws Exception {
-        // Load the truststore
-        KeyStore trustStore = KeyStore.getInstance("JKS");
-        String keystorePath = "/home/sharat/Desktop/clienttruststore.jks";
-        try (FileInputStream trustStoreFis = new FileInputStream(keystorePath)) {
-            trustStore.load(trustStoreFis, "truststorepassword".toCharArray());
-        }
-
-        // Initialize the TrustManagerFactory with the truststore
-        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
-        tmf.init(trustStore);
-
-        // Initialize the SSLContext with the trust managers
-        SSLContext sslContext = SSLContext.getInstance("TLS");
-        sslContext.init(null, tmf.getTrustManagers(), null);
+        // Load the truststore and build the SSLContext once; reusing the context keeps its
+        // client session cache, so later connections to the same server can resume
+        String keystorePath = System.getProperty("tls.truststore", "/home/sharat/Desktop/clienttruststore.jks");
+        SSLContext sslContext = SecureTransport.clientContext(keystorePath, "truststorepassword".toCharArray());
 
         // Create an SSLSocketFactory from the SSLContext
         SSLSocketFactory factory = sslContext.getSocketFactory();
@@ -193,24 +179,13 @@ d. SecureclientSession.java
 
 import javax.net.ssl.*;
 import java.io.*;
-import java.security.KeyStore;
 
 public class SecureClient {
     public static void main(String[] args) throws Exception {
-        // Load the truststore
-        KeyStore trustStore = KeyStore.getInstance("JKS");
-        String keystorePath = "/home/sharat/Desktop/clienttruststore.jks";
-        try (FileInputStream trustStoreFis = new FileInputStream(keystorePath)) {
-            trustStore.load(trustStoreFis, "truststorepassword".toCharArray());
-        }
-
-        // Initialize the TrustManagerFactory with the truststore
-        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
-        tmf.init(trustStore);
-
-        // Initialize the SSLContext with the trust managers
-        SSLContext sslContext = SSLContext.getInstance("TLS");
-        sslContext.init(null, tmf.getTrustManagers(), null);
+        // Load the truststore and build the SSLContext once; reusing the context keeps its
+        // client session cache, so later connections to the same server can resume
+        String keystorePath = System.getProperty("tls.truststore", "/home/sharat/Desktop/clienttruststore.jks");
+        SSLContext sslContext = SecureTransport.clientContext(keystorePath, "truststorepassword".toCharArray());
 
         // Create an SSLSocketFactory from the SSLContext
         SSLSocketFactory factory = sslContext.getSocketFactory();
@@ -219,8 +194,9 @@ public class SecureClient {
         SSLSocket socket = (SSLSocket) factory.createSocket("localhost", 8443);
 
 
-        // Retrieve the SSLSession associated with the socket
-        SSLSession session = socket.getSession();
+        // Run the handshake and retrieve the SSLSession associated with the socket
+        long handshakeStart = System.currentTimeMillis();
+        SSLSession session = SecureTransport.handshake(socket);
 
         // Display session details
         System.out.println("SSLSession Details:");
@@ -229,6 +205,7 @@ public class SecureClient {
         System.out.println("Session ID: " + session.getId());
         System.out.println("Peer Host: " + session.getPeerHost());
         System.out.println("Peer Port: " + session.getPeerPort());
+        System.out.println("Resumed: " + SecureTransport.isResumed(session, handshakeStart));
 
         // Initialize output and input streams for communication
         PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
@@ -246,3 +223,364 @@ public class SecureClient {
         socket.close();
     }
 }
+
+
+e. SecureTransport.java
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.net.ssl.*;
+
+// Process-wide SSLContext cache plus handshake counters.
+//
+// Loading a keystore and initialising an SSLContext is slow, and the TLS session cache lives
+// inside the SSLContext: a client that builds a new context per connection can never resume a
+// session, so every connection pays for a full handshake. Sharing one context per keystore lets
+// reconnecting clients resume (by session ID in TLS 1.2, by session ticket in TLS 1.3).
+//
+// Session cache size and lifetime: -Dtls.sessionCacheSize (20000) and -Dtls.sessionTimeout (3600 s)
+public final class SecureTransport {
+    static final int SESSION_CACHE_SIZE = Integer.getInteger("tls.sessionCacheSize", 20000);
+    static final int SESSION_TIMEOUT_SECONDS = Integer.getInteger("tls.sessionTimeout", 3600);
+
+    private static final ConcurrentMap<String, SSLContext> CONTEXTS = new ConcurrentHashMap<>();
+    private static final LongAdder fullHandshakes = new LongAdder();
+    private static final LongAdder resumedHandshakes = new LongAdder();
+
+    private SecureTransport() {
+    }
+
+    // Context holding the server's private key and certificate, loaded once per keystore
+    public static SSLContext serverContext(String keystorePath, char[] password) throws IOException, GeneralSecurityException {
+        String key = "server:" + keystorePath;
+        SSLContext context = CONTEXTS.get(key);
+        if (context == null) {
+            KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            kmf.init(load(keystorePath, password), password);
+            context = SSLContext.getInstance("TLS");
+            context.init(kmf.getKeyManagers(), null, null);
+            context = cache(key, context);
+        }
+        return context;
+    }
+
+    // Context trusting the certificates in the truststore, loaded once per truststore
+    public static SSLContext clientContext(String truststorePath, char[] password) throws IOException, GeneralSecurityException {
+        String key = "client:" + truststorePath;
+        SSLContext context = CONTEXTS.get(key);
+        if (context == null) {
+            TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            tmf.init(load(truststorePath, password));
+            context = SSLContext.getInstance("TLS");
+            context.init(null, tmf.getTrustManagers(), null);
+            context = cache(key, context);
+        }
+        return context;
+    }
+
+    // Runs the handshake now (instead of on first read/write) and counts it as full or resumed.
+    // A resumed handshake reuses a session that was created before this handshake started.
+    public static SSLSession handshake(SSLSocket socket) throws IOException {
+        long start = System.currentTimeMillis();
+        socket.startHandshake();
+        SSLSession session = socket.getSession();
+        recordHandshake(session, start);
+        return session;
+    }
+
+    // For handshakes driven elsewhere, e.g. by an SSLEngine
+    public static void recordHandshake(SSLSession session, long handshakeStartMillis) {
+        if (isResumed(session, handshakeStartMillis)) {
+            resumedHandshakes.increment();
+        } else {
+            fullHandshakes.increment();
+        }
+    }
+
+    public static boolean isResumed(SSLSession session, long handshakeStartMillis) {
+        return session.getCreationTime() < handshakeStartMillis;
+    }
+
+    public static long getFullHandshakeCount() {
+        return fullHandshakes.sum();
+    }
+
+    public static long getResumedHandshakeCount() {
+        return resumedHandshakes.sum();
+    }
+
+    public static String stats() {
+        return "handshakes: full=" + getFullHandshakeCount() + " resumed=" + getResumedHandshakeCount();
+    }
+
+    private static SSLContext cache(String key, SSLContext context) {
+        tune(context.getServerSessionContext());
+        tune(context.getClientSessionContext());
+        SSLContext existing = CONTEXTS.putIfAbsent(key, context);
+        return existing != null ? existing : context; // another thread got there first
+    }
+
+    private static void tune(SSLSessionContext sessions) {
+        sessions.setSessionCacheSize(SESSION_CACHE_SIZE);
+        sessions.setSessionTimeout(SESSION_TIMEOUT_SECONDS);
+    }
+
+    // A keystore is a file holding private keys and/or certificates, decrypted with its password
+    private static KeyStore load(String path, char[] password) throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (FileInputStream in = new FileInputStream(path)) {
+            keyStore.load(in, password);
+        }
+        return keyStore;
+    }
+}
+
+
+f. TlsHandler.java
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+
+// TLS for Reactor connections, using an SSLEngine instead of a blocking SSLSocket.
+// Wraps another ProtocolHandler: network bytes are unwrapped before the inner handler sees
+// them, and everything the inner handler writes is wrapped on its way out (as the
+// connection's Filter). The slow parts of a handshake (the engine's delegated tasks) run on a
+// separate executor so they never stall the selector thread and its other connections.
+// Network buffers come from a pool of direct buffers sized to the TLS packet size.
+public class TlsHandler implements ProtocolHandler, Connection.Filter {
+    private final SSLEngine engine;
+    private final ProtocolHandler inner;
+    private final BufferPool pool;
+    private final Executor taskExecutor;
+
+    private ByteBuffer netIn;  // encrypted bytes received but not unwrapped yet ("fill" mode)
+    private ByteBuffer netOut; // one wrapped record at a time
+    private ByteBuffer appIn;  // decrypted bytes the inner handler has not consumed ("fill" mode)
+    private boolean handshakeDone;
+    private boolean taskRunning;
+    private long handshakeStart;
+
+    public TlsHandler(SSLEngine engine, ProtocolHandler inner, BufferPool pool, Executor taskExecutor) {
+        this.engine = engine;
+        this.inner = inner;
+        this.pool = pool;
+        this.taskExecutor = taskExecutor;
+    }
+
+    @Override
+    public void onOpen(Connection connection) throws IOException {
+        netIn = pool.acquire();
+        netOut = pool.acquire();
+        appIn = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+        connection.setFilter(this);
+        handshakeStart = System.currentTimeMillis();
+        engine.beginHandshake();
+        process(connection);
+    }
+
+    @Override
+    public void onRead(Connection connection, ByteBuffer in) throws IOException {
+        // Move the network bytes into our own buffer so they can be processed later too,
+        // e.g. once a delegated task has finished
+        if (netIn.remaining() < in.remaining()) {
+            netIn = grow(netIn, netIn.position() + in.remaining());
+        }
+        netIn.put(in);
+        if (!taskRunning) {
+            process(connection);
+        }
+    }
+
+    @Override
+    public void onClose(Connection connection) {
+        engine.closeOutbound();
+        if (handshakeDone) {
+            inner.onClose(connection);
+        }
+        pool.release(netIn);
+        pool.release(netOut);
+    }
+
+    // Filter: encrypt what the inner handler writes
+    @Override
+    public void write(Connection connection, ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) {
+            if (wrap(connection, src).getStatus() == SSLEngineResult.Status.CLOSED) {
+                throw new SSLException("TLS connection closed");
+            }
+        }
+    }
+
+    // Filter: send close_notify before the connection closes
+    @Override
+    public void closeOutbound(Connection connection) throws IOException {
+        engine.closeOutbound();
+        while (!engine.isOutboundDone()) {
+            wrap(connection, ByteBuffer.allocate(0));
+        }
+    }
+
+    // Drives the engine as far as the bytes received so far allow
+    private void process(Connection connection) throws IOException {
+        while (connection.isOpen()) {
+            HandshakeStatus status = engine.getHandshakeStatus();
+            if (status == HandshakeStatus.NEED_TASK) {
+                runDelegatedTasks(connection);
+                return;
+            }
+            if (status == HandshakeStatus.NEED_WRAP) {
+                wrap(connection, ByteBuffer.allocate(0));
+                continue;
+            }
+
+            netIn.flip();
+            SSLEngineResult result = engine.unwrap(netIn, appIn);
+            netIn.compact();
+            checkFinished(connection, result);
+
+            switch (result.getStatus()) {
+                case OK:
+                    if (appIn.position() > 0) {
+                        deliver(connection);
+                    }
+                    if (result.bytesConsumed() == 0 && result.bytesProduced() == 0
+                            && engine.getHandshakeStatus() != HandshakeStatus.NEED_WRAP
+                            && engine.getHandshakeStatus() != HandshakeStatus.NEED_TASK) {
+                        return; // nothing more to do until more bytes arrive
+                    }
+                    break;
+                case BUFFER_UNDERFLOW:
+                    // Incomplete record: wait for more bytes, making room if the record is big
+                    if (netIn.position() == netIn.capacity()) {
+                        netIn = grow(netIn, engine.getSession().getPacketBufferSize() + netIn.capacity());
+                    }
+                    return;
+                case BUFFER_OVERFLOW:
+                    // Let the inner handler consume what it can first, then grow if still too small
+                    if (appIn.position() > 0) {
+                        deliver(connection);
+                    }
+                    if (appIn.remaining() < engine.getSession().getApplicationBufferSize()) {
+                        appIn = grow(appIn, appIn.position() + engine.getSession().getApplicationBufferSize());
+                    }
+                    break;
+                case CLOSED:
+                    if (appIn.position() > 0) {
+                        deliver(connection);
+                    }
+                    connection.closeAfterWrite();
+                    return;
+            }
+        }
+    }
+
+    private SSLEngineResult wrap(Connection connection, ByteBuffer src) throws IOException {
+        while (true) {
+            netOut.clear();
+            SSLEngineResult result = engine.wrap(src, netOut);
+            if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                netOut = grow(netOut, engine.getSession().getPacketBufferSize());
+                continue;
+            }
+            netOut.flip();
+            connection.writeRaw(netOut);
+            checkFinished(connection, result);
+            return result;
+        }
+    }
+
+    private void checkFinished(Connection connection, SSLEngineResult result) throws IOException {
+        if (result.getHandshakeStatus() == HandshakeStatus.FINISHED && !handshakeDone) {
+            handshakeDone = true;
+            SecureTransport.recordHandshake(engine.getSession(), handshakeStart);
+            inner.onOpen(connection);
+        }
+    }
+
+    private void deliver(Connection connection) throws IOException {
+        if (!handshakeDone) {
+            return;
+        }
+        appIn.flip();
+        inner.onRead(connection, appIn);
+        appIn.compact();
+    }
+
+    // Runs the engine's delegated tasks off the selector thread, then resumes on it
+    private void runDelegatedTasks(Connection connection) {
+        taskRunning = true;
+        taskExecutor.execute(() -> {
+            Runnable task;
+            while ((task = engine.getDelegatedTask()) != null) {
+                task.run();
+            }
+            connection.execute(() -> {
+                taskRunning = false;
+                try {
+                    process(connection);
+                } catch (IOException e) {
+                    connection.close();
+                }
+            });
+        });
+    }
+
+    // New buffer of at least minCapacity holding buffer's contents, still in "fill" mode
+    private ByteBuffer grow(ByteBuffer buffer, int minCapacity) {
+        ByteBuffer bigger = ByteBuffer.allocateDirect(Math.max(minCapacity, buffer.capacity() * 2));
+        buffer.flip();
+        bigger.put(buffer);
+        pool.release(buffer);
+        return bigger;
+    }
+}
+
+
+g. NonBlockingSecureServer.java
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+
+// The SecureServer echo service on the NIO Reactor: a handful of selector threads serve
+// every TLS connection, instead of one blocked thread per SSLSocket
+public class NonBlockingSecureServer {
+    public static void main(String[] args) throws Exception {
+        int serverPort = 8443;
+        String keystorePath = System.getProperty("tls.keystore", "/home/sharat/Desktop/serverkeystore.jks");
+        SSLContext sslContext = SecureTransport.serverContext(keystorePath, "password".toCharArray());
+
+        // Network buffers sized to the largest TLS record, shared across connections
+        int packetSize = sslContext.createSSLEngine().getSession().getPacketBufferSize();
+        BufferPool pool = new BufferPool(packetSize, 4096, true);
+
+        // Handshake crypto (delegated tasks) runs here, off the selector threads
+        ExecutorService handshakeTasks = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "tls-tasks");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Reactor reactor = new Reactor(new InetSocketAddress(serverPort), () -> {
+            SSLEngine engine = sslContext.createSSLEngine();
+            engine.setUseClientMode(false);
+            engine.setNeedClientAuth(false); // client does not need to prove its identity to the server
+            return new TlsHandler(engine, new NonBlockingServer.EchoHandler(), pool, handshakeTasks);
+        });
+        reactor.setMetrics(ServerMetrics.forServer("secure"));
+        reactor.start();
+        System.out.println("NonBlockingSecureServer started. Listening on port " + serverPort + "...");
+    }
+}
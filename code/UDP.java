@@ -0,0 +1,1146 @@
+a. Server.java
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+// UDP echo server on port 4567. Runs until killed and prints packet counters every second.
+//
+//   java -Dudp.threads=4 -Dudp.batch=64 Server
+public class Server {
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 4567;
+        int threads = Integer.getInteger("udp.threads", Runtime.getRuntime().availableProcessors());
+
+        UdpServer server = new UdpServer(new InetSocketAddress(port), threads, (from, request, response) -> {
+            // Echo back the message
+            response.put(request);
+            return true;
+        });
+        server.start();
+        System.out.println("Server is running on port " + port + " with " + threads + " threads"
+                + (server.isReusePort() ? " (SO_REUSEPORT)" : " (shared socket)"));
+        server.startReporter(System.out);
+    }
+}
+
+
+b. Client.java
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+
+// UDP client for the echo server.
+//   java Client                      sends "hello server" and prints the reply
+//   java Client 1000000 256 32       sends 1,000,000 32-byte datagrams, up to 256 unanswered at
+//                                    a time, and reports the rate and how many were lost
+public class Client {
+    public static void main(String[] args) throws Exception {
+        SocketAddress server = new InetSocketAddress("127.0.0.1", 4567);
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            channel.connect(server);
+
+            if (args.length == 0) {
+                String message = "hello server";
+                channel.write(ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)));
+                System.out.println("Message sent: " + message);
+
+                ByteBuffer reply = ByteBuffer.allocate(1500);
+                channel.read(reply);
+                reply.flip();
+                System.out.println("Message received: " + StandardCharsets.UTF_8.decode(reply));
+                return;
+            }
+
+            long count = Long.parseLong(args[0]);
+            int window = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+            int size = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, 4 * 1024 * 1024);
+            channel.configureBlocking(false);
+            ByteBuffer request = ByteBuffer.allocateDirect(size);
+            ByteBuffer reply = ByteBuffer.allocateDirect(1500);
+
+            long sent = 0;
+            long received = 0;
+            long lost = 0;
+            long start = System.nanoTime();
+            long lastReply = start;
+            // Stop once everything is answered, or nothing has come back for a second (the rest were lost)
+            while (received + lost < count && System.nanoTime() - lastReply < 1_000_000_000L) {
+                while (sent < count && sent - received - lost < window) {
+                    request.clear();
+                    if (channel.write(request) == 0) {
+                        break; // socket send buffer full
+                    }
+                    sent++;
+                }
+                reply.clear();
+                while (channel.read(reply) > 0) {
+                    received++;
+                    lastReply = System.nanoTime();
+                    reply.clear();
+                }
+                if (sent - received - lost >= window && System.nanoTime() - lastReply > 100_000_000L) {
+                    lost = sent - received; // window stuck for 100 ms: count the outstanding ones as lost
+                    lastReply = System.nanoTime();
+                }
+            }
+            long micros = Math.max(1, (System.nanoTime() - start) / 1000);
+            System.out.println(sent + " sent, " + received + " echoed, " + (sent - received) + " lost in "
+                    + micros / 1000 + " ms (" + received * 1_000_000 / micros + " datagrams/s)");
+        }
+    }
+}
+
+
+c. UdpServer.java
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+// Long-running UDP request/response server on DatagramChannel.
+//
+// - Several worker threads. Where the OS supports SO_REUSEPORT each worker binds its own
+//   channel to the port and the kernel spreads datagrams across them; otherwise they share
+//   one channel.
+// - Each worker owns a batch of pooled direct buffers (from BufferPool): it drains up to
+//   `batch` datagrams without blocking, lets the handler fill the replies, then sends the
+//   whole batch before waiting on its Selector again. No per-packet byte[] or DatagramPacket.
+// - Counters for received, sent, truncated and dropped datagrams; startReporter() prints
+//   per-second rates.
+//
+// Properties: udp.batch (default 64), udp.bufferSize (1500), udp.rcvbuf / udp.sndbuf (4 MB).
+public class UdpServer implements Closeable {
+
+    public interface DatagramHandler {
+        // Called on a worker thread. request is flipped and must not be kept; write the reply
+        // into response (cleared) and return true to send it back to `from`.
+        boolean handle(SocketAddress from, ByteBuffer request, ByteBuffer response) throws Exception;
+    }
+
+    private final InetSocketAddress address;
+    private final int threads;
+    private final DatagramHandler handler;
+    private final int batch = Integer.getInteger("udp.batch", 64);
+    private final BufferPool pool;
+    private final List<DatagramChannel> channels = new ArrayList<>();
+    private boolean reusePort;
+    private volatile boolean running;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder truncated = new LongAdder(); // larger than udp.bufferSize
+    private final LongAdder dropped = new LongAdder();   // handler failed or send buffer full
+
+    public UdpServer(InetSocketAddress address, int threads, DatagramHandler handler) {
+        this.address = address;
+        this.threads = threads;
+        this.handler = handler;
+        this.pool = new BufferPool(Integer.getInteger("udp.bufferSize", 1500), threads * batch * 2, true);
+    }
+
+    public void start() throws IOException {
+        running = true;
+        DatagramChannel first = open();
+        reusePort = first.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT) && threads > 1;
+        channels.add(first);
+        for (int i = 1; i < threads; i++) {
+            channels.add(reusePort ? open() : first);
+        }
+        for (int i = 0; i < threads; i++) {
+            new Thread(new Worker(channels.get(i)), "udp-worker-" + i).start();
+        }
+    }
+
+    public boolean isReusePort() {
+        return reusePort;
+    }
+
+    public int getLocalPort() throws IOException {
+        return ((InetSocketAddress) channels.get(0).getLocalAddress()).getPort();
+    }
+
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    public long getTruncatedCount() {
+        return truncated.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    // Prints "rx/s tx/s drops/s" once a second on a daemon thread
+    public void startReporter(PrintStream out) {
+        Thread reporter = new Thread(() -> {
+            long lastReceived = 0, lastSent = 0, lastDropped = 0;
+            while (running) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long rx = getReceivedCount(), tx = getSentCount(), drops = getDroppedCount() + getTruncatedCount();
+                out.println("rx " + (rx - lastReceived) + "/s, tx " + (tx - lastSent) + "/s, drops "
+                        + (drops - lastDropped) + "/s");
+                lastReceived = rx;
+                lastSent = tx;
+                lastDropped = drops;
+            }
+        }, "udp-stats");
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        for (DatagramChannel channel : channels) {
+            channel.close(); // wakes the workers' selectors
+        }
+    }
+
+    private DatagramChannel open() throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        if (channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT) && threads > 1) {
+            channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        }
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, Integer.getInteger("udp.rcvbuf", 4 * 1024 * 1024));
+        channel.setOption(StandardSocketOptions.SO_SNDBUF, Integer.getInteger("udp.sndbuf", 4 * 1024 * 1024));
+        channel.bind(channels.isEmpty() ? address : channels.get(0).getLocalAddress()); // same port if address asked for 0
+        channel.configureBlocking(false);
+        return channel;
+    }
+
+    private final class Worker implements Runnable {
+        private final DatagramChannel channel;
+        private final ByteBuffer[] requests = new ByteBuffer[batch];
+        private final ByteBuffer[] responses = new ByteBuffer[batch];
+        private final SocketAddress[] senders = new SocketAddress[batch];
+
+        Worker(DatagramChannel channel) {
+            this.channel = channel;
+            for (int i = 0; i < batch; i++) {
+                requests[i] = pool.acquire();
+                responses[i] = pool.acquire();
+            }
+        }
+
+        @Override
+        public void run() {
+            try (Selector selector = Selector.open()) {
+                channel.register(selector, SelectionKey.OP_READ);
+                while (running) {
+                    int count = receiveBatch();
+                    if (count == 0) {
+                        selector.select(); // nothing queued: wait for the next datagram
+                        selector.selectedKeys().clear();
+                        continue;
+                    }
+                    sendBatch(count);
+                }
+            } catch (IOException e) {
+                if (running) {
+                    e.printStackTrace();
+                }
+            } finally {
+                for (int i = 0; i < batch; i++) {
+                    pool.release(requests[i]);
+                    pool.release(responses[i]);
+                }
+            }
+        }
+
+        // Receives up to `batch` datagrams and runs the handler on each; returns how many arrived
+        private int receiveBatch() throws IOException {
+            int count = 0;
+            while (count < batch) {
+                ByteBuffer request = requests[count];
+                request.clear();
+                SocketAddress from = channel.receive(request);
+                if (from == null) {
+                    break;
+                }
+                received.increment();
+                if (!request.hasRemaining()) {
+                    truncated.increment(); // the rest of the datagram was discarded by the kernel
+                    continue;
+                }
+                request.flip();
+                ByteBuffer response = responses[count];
+                response.clear();
+                try {
+                    if (!handler.handle(from, request, response)) {
+                        continue;
+                    }
+                } catch (Exception e) {
+                    dropped.increment();
+                    continue;
+                }
+                response.flip();
+                senders[count++] = from;
+            }
+            return count;
+        }
+
+        private void sendBatch(int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                if (channel.send(responses[i], senders[i]) == 0) {
+                    dropped.increment(); // send buffer full; UDP gives no delivery promise anyway
+                } else {
+                    sent.increment();
+                }
+                senders[i] = null;
+            }
+        }
+    }
+}
+
+
+d. ReliableTransfer.java
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+// Sends messages over ReliableChannel through a LossyLink that drops and reorders datagrams,
+// and checks that every message arrives once, intact and in order.
+//
+//   java -Dlink.loss=0.05 -Dlink.reorder=0.2 -Dlink.delay=20 ReliableTransfer 5000 8000
+//   (5000 messages of 4..8000 bytes; anything over ~1.4 KB is fragmented)
+public class ReliableTransfer {
+    public static void main(String[] args) throws Exception {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int maxSize = args.length > 1 ? Integer.parseInt(args[1]) : 4000;
+
+        CountDownLatch done = new CountDownLatch(messages);
+        AtomicInteger expected = new AtomicInteger();
+        AtomicInteger corrupt = new AtomicInteger();
+
+        DatagramChannel receiverSocket = DatagramChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+        ReliableChannel receiver = new ReliableChannel(receiverSocket, null, message -> {
+            ByteBuffer in = ByteBuffer.wrap(message);
+            int index = in.getInt();
+            CRC32 crc = new CRC32();
+            crc.update(message, 0, message.length - 8);
+            in.position(message.length - 8);
+            if (index != expected.getAndIncrement() || in.getLong() != crc.getValue()) {
+                corrupt.incrementAndGet();
+            }
+            done.countDown();
+        });
+        receiver.start();
+
+        LossyLink link = new LossyLink(new InetSocketAddress("127.0.0.1", 0), (InetSocketAddress) receiverSocket.getLocalAddress(),
+                Double.parseDouble(System.getProperty("link.loss", "0.02")),
+                Double.parseDouble(System.getProperty("link.reorder", "0.1")),
+                Integer.getInteger("link.delay", 10), 42);
+        link.start();
+
+        DatagramChannel senderSocket = DatagramChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+        ReliableChannel sender = new ReliableChannel(senderSocket, link.getLocalAddress(), message -> { });
+        sender.start();
+
+        long start = System.nanoTime();
+        long bytes = 0;
+        Random random = new Random(7);
+        for (int i = 0; i < messages; i++) {
+            byte[] message = new byte[12 + random.nextInt(maxSize - 11)];
+            random.nextBytes(message);
+            ByteBuffer out = ByteBuffer.wrap(message);
+            out.putInt(0, i);
+            CRC32 crc = new CRC32();
+            crc.update(message, 0, message.length - 8);
+            out.putLong(message.length - 8, crc.getValue());
+            sender.send(message);
+            bytes += message.length;
+        }
+
+        boolean complete = done.await(120, TimeUnit.SECONDS);
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        System.out.println((complete ? "delivered " : "TIMED OUT, delivered ") + (messages - done.getCount()) + "/" + messages
+                + " messages (" + bytes / 1024 + " KB) in " + millis + " ms, " + bytes / 1024 * 1000 / millis + " KB/s, "
+                + corrupt.get() + " out of order or corrupt");
+        System.out.println("link:     " + link.stats());
+        System.out.println("sender:   " + sender.stats());
+        System.out.println("receiver: " + receiver.stats());
+
+        sender.close();
+        receiver.close();
+        link.close();
+    }
+}
+
+
+e. ReliableChannel.java
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.PortUnreachableException;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Reliable, ordered message delivery between two DatagramChannels.
+//
+// Wire format (big-endian):
+//   DATA  type=1, flags, reserved(2), seq(4), fragment index(2), fragment count(2), payload
+//   ACK   type=2, flags, receive window(2), cumulative ack(4), SACK bitmap(8)
+// Messages larger than one datagram are split into fragments of at most MAX_PAYLOAD bytes,
+// each with its own sequence number, and reassembled in order on the other side.
+//
+// Sender: a sliding window of up to WINDOW packets, further limited by the peer's advertised
+// receive window and a Reno-style congestion window (slow start, additive increase, halving
+// on loss). The ACK carries the next expected seq plus a bitmap of the 64 packets after it
+// (selective ACK), so only the missing packets are resent: a hole with 3 SACKed packets after
+// it is fast-retransmitted, anything else is resent when its retransmit timer fires. Timers
+// live on a TimingWheel and use an RFC 6298 RTO estimate with exponential backoff.
+//
+// Receiver: keeps out-of-order packets in a ring until the gap is filled, delivers complete
+// messages to the handler, and sends one ACK per batch of datagrams read.
+//
+// Each channel has one thread that does all of the above; send() may be called from any thread.
+public class ReliableChannel implements Closeable {
+
+    public interface MessageHandler {
+        // Called on the channel's thread, in send order
+        void onMessage(byte[] message);
+    }
+
+    public static final int MAX_DATAGRAM = 1472; // 1500-byte Ethernet MTU minus IPv4 and UDP headers
+    public static final int MAX_PAYLOAD = MAX_DATAGRAM - 12;
+
+    private static final byte DATA = 1;
+    private static final byte ACK = 2;
+    private static final int WINDOW = 1024; // packets; power of 2, ring index = seq & (WINDOW - 1)
+    private static final int DUP_THRESHOLD = 3;
+    private static final long MIN_RTO = 20;
+    private static final long MAX_RTO = 2000;
+
+    private static final class Segment {
+        final int seq;
+        final ByteBuffer packet;
+        long sentAt;
+        int transmissions;
+        long rto;
+        boolean sacked;
+        boolean fastRetransmitted;
+        TimingWheel.Timeout timer;
+
+        Segment(int seq, ByteBuffer packet) {
+            this.seq = seq;
+            this.packet = packet;
+        }
+    }
+
+    private final DatagramChannel channel;
+    private final MessageHandler handler;
+    private final BlockingQueue<byte[]> outgoing = new ArrayBlockingQueue<>(1024);
+    private final TimingWheel wheel = new TimingWheel(5, 256, 4);
+    private final Selector selector;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // Sender state; only touched on the channel thread
+    private final Segment[] sendRing = new Segment[WINDOW];
+    private final ArrayDeque<ByteBuffer> fragments = new ArrayDeque<>(); // fragmented but not yet given a seq
+    private int sndUna;    // oldest unacknowledged seq
+    private int sndNext;   // next seq to assign
+    private int sacked;    // packets between sndUna and sndNext the peer has SACKed
+    private double cwnd = 4;
+    private double ssthresh = WINDOW;
+    private int peerWindow = WINDOW;
+    private int recoveryPoint; // no further window cut until sndUna passes this
+    private double srtt = -1;
+    private double rttvar;
+    private long rto = 200;
+
+    // Receiver state
+    private final byte[][] recvRing = new byte[WINDOW][];
+    private final int[] recvSeq = new int[WINDOW];
+    private final ByteArrayOutputStream reassembly = new ByteArrayOutputStream();
+    private int rcvNext;
+    private boolean ackPending;
+
+    // Counters; read from other threads for stats() only
+    private volatile long packetsSent;
+    private volatile long timeoutRetransmits;
+    private volatile long fastRetransmits;
+    private volatile long duplicates;
+    private volatile long messagesDelivered;
+
+    // peer may be null for a channel that waits to be contacted; it then replies to whoever sends first
+    public ReliableChannel(DatagramChannel channel, SocketAddress peer, MessageHandler handler) throws IOException {
+        this.channel = channel;
+        this.handler = handler;
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, 4 * 1024 * 1024);
+        channel.setOption(StandardSocketOptions.SO_SNDBUF, 4 * 1024 * 1024);
+        if (peer != null) {
+            channel.connect(peer);
+        }
+        channel.configureBlocking(false);
+        this.selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+        this.thread = new Thread(this::run, "reliable-udp");
+        for (int i = 0; i < WINDOW; i++) {
+            recvSeq[i] = -1;
+        }
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    // Queues a message; blocks while 1024 messages are already waiting for window space
+    public void send(byte[] message) throws InterruptedException {
+        if (message.length > MAX_PAYLOAD * 0xFFFF) {
+            throw new IllegalArgumentException("message too large: " + message.length);
+        }
+        outgoing.put(message);
+        selector.wakeup();
+    }
+
+    public String stats() {
+        return "sent " + packetsSent + " packets, " + timeoutRetransmits + " timeout + " + fastRetransmits
+                + " fast retransmits, " + duplicates + " duplicates received, " + messagesDelivered
+                + " messages delivered, cwnd " + (int) cwnd + ", srtt " + (srtt < 0 ? "-" : (int) srtt + " ms")
+                + ", rto " + rto + " ms";
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        selector.close();
+        channel.close();
+    }
+
+    private void run() {
+        ByteBuffer in = ByteBuffer.allocateDirect(MAX_DATAGRAM);
+        try {
+            while (running) {
+                wheel.advance(System.currentTimeMillis());
+                transmitNew();
+
+                boolean canSend = !fragments.isEmpty() || !outgoing.isEmpty();
+                if (canSend && flight() < window() && channel.isConnected()) {
+                    selector.selectNow();
+                } else {
+                    selector.select(wheel.isEmpty() ? 0 : wheel.tickMillis());
+                }
+                selector.selectedKeys().clear();
+
+                for (int i = 0; i < 256; i++) {
+                    in.clear();
+                    SocketAddress from;
+                    try {
+                        from = channel.receive(in);
+                    } catch (PortUnreachableException e) {
+                        continue; // peer not listening yet; retransmission takes care of it
+                    }
+                    if (from == null) {
+                        break;
+                    }
+                    if (!channel.isConnected()) {
+                        channel.connect(from);
+                    }
+                    in.flip();
+                    onDatagram(in);
+                }
+                if (ackPending) {
+                    sendAck();
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // ---- sender ----
+
+    private int flight() {
+        return sndNext - sndUna - sacked;
+    }
+
+    private int window() {
+        return Math.min((int) cwnd, Math.min(peerWindow, WINDOW));
+    }
+
+    // Assigns seqs to queued fragments and sends them while the window allows
+    private void transmitNew() throws IOException {
+        while (channel.isConnected() && flight() < window() && sndNext - sndUna < WINDOW) {
+            if (fragments.isEmpty() && !fragment(outgoing.poll())) {
+                return;
+            }
+            ByteBuffer fragment = fragments.peek();
+            ByteBuffer packet = ByteBuffer.allocate(8 + fragment.remaining());
+            packet.put(DATA).put((byte) 0).putShort((short) 0).putInt(sndNext).put(fragment.duplicate()).flip();
+            Segment segment = new Segment(sndNext, packet);
+            if (!transmit(segment)) {
+                return; // send buffer full; try again next round
+            }
+            fragments.poll();
+            sendRing[sndNext & (WINDOW - 1)] = segment;
+            sndNext++;
+        }
+    }
+
+    // Splits a message into fragment payloads, each prefixed with its index and count
+    private boolean fragment(byte[] message) {
+        if (message == null) {
+            return false;
+        }
+        int count = Math.max(1, (message.length + MAX_PAYLOAD - 1) / MAX_PAYLOAD);
+        for (int i = 0; i < count; i++) {
+            int offset = i * MAX_PAYLOAD;
+            int length = Math.min(MAX_PAYLOAD, message.length - offset);
+            ByteBuffer fragment = ByteBuffer.allocate(4 + length);
+            fragment.putShort((short) i).putShort((short) count).put(message, offset, length).flip();
+            fragments.add(fragment);
+        }
+        return true;
+    }
+
+    private boolean transmit(Segment segment) throws IOException {
+        segment.packet.rewind();
+        try {
+            if (channel.write(segment.packet) == 0) {
+                return false;
+            }
+        } catch (PortUnreachableException e) {
+            // Peer not up yet: treat as lost, the retransmit timer resends it
+        }
+        packetsSent++;
+        segment.transmissions++;
+        segment.sentAt = System.currentTimeMillis();
+        segment.rto = segment.transmissions == 1 ? rto : Math.min(MAX_RTO, segment.rto * 2);
+        if (segment.timer != null) {
+            segment.timer.cancel();
+        }
+        segment.timer = wheel.schedule(() -> onTimeout(segment), segment.rto);
+        return true;
+    }
+
+    private void onTimeout(Segment segment) {
+        if (segment.sacked || segment.seq - sndUna < 0) {
+            return; // acknowledged in the meantime
+        }
+        timeoutRetransmits++;
+        if (segment.seq - recoveryPoint >= 0) {
+            // First loss in this window: back off to slow start
+            ssthresh = Math.max(2, flight() / 2.0);
+            cwnd = 1;
+            recoveryPoint = sndNext;
+        }
+        // This timer has already fired, so a send that did not happen (socket buffer full or an
+        // error) must arm a new one; otherwise the segment is never sent again and the transfer stalls
+        boolean sent;
+        try {
+            sent = transmit(segment);
+        } catch (IOException e) {
+            sent = false;
+        }
+        if (!sent) {
+            segment.timer = wheel.schedule(() -> onTimeout(segment), segment.rto);
+        }
+    }
+
+    private void onAck(ByteBuffer in) throws IOException {
+        int window = in.getShort() & 0xFFFF;
+        int cumulative = in.getInt();
+        long bitmap = in.getLong();
+        long now = System.currentTimeMillis();
+
+        if (cumulative - sndNext > 0) {
+            return; // acknowledges something never sent: ignore
+        }
+        if (cumulative - sndUna < 0) {
+            // Overtaken by a newer ACK (the link reorders): its window is out of date, and its
+            // SACK bits may name sequences whose ring slots now hold packets WINDOW further on
+            return;
+        }
+        peerWindow = Math.max(1, window);
+        int newlyAcked = 0;
+        while (cumulative - sndUna > 0) {
+            Segment segment = sendRing[sndUna & (WINDOW - 1)];
+            sendRing[sndUna & (WINDOW - 1)] = null;
+            if (segment.sacked) {
+                sacked--;
+            } else {
+                acknowledge(segment, now);
+                newlyAcked++;
+            }
+            sndUna++;
+        }
+
+        int highestSacked = sndUna - 1;
+        for (int i = 0; i < 64 && bitmap != 0; i++, bitmap >>>= 1) {
+            int seq = cumulative + 1 + i;
+            if ((bitmap & 1) == 0 || seq - sndUna < 0 || seq - sndNext >= 0) {
+                continue;
+            }
+            Segment segment = sendRing[seq & (WINDOW - 1)];
+            if (segment != null && segment.seq == seq && !segment.sacked) {
+                segment.sacked = true;
+                sacked++;
+                acknowledge(segment, now);
+                newlyAcked++;
+            }
+            highestSacked = seq;
+        }
+
+        // Fast retransmit of holes with at least DUP_THRESHOLD SACKed packets above them
+        for (int seq = sndUna; highestSacked - seq >= DUP_THRESHOLD; seq++) {
+            Segment segment = sendRing[seq & (WINDOW - 1)];
+            if (segment == null || segment.sacked || segment.fastRetransmitted) {
+                continue;
+            }
+            if (seq - recoveryPoint >= 0) {
+                ssthresh = Math.max(2, cwnd / 2);
+                cwnd = ssthresh;
+                recoveryPoint = sndNext;
+            }
+            segment.fastRetransmitted = true;
+            fastRetransmits++;
+            transmit(segment);
+        }
+
+        // Congestion window growth: +1 per ACKed packet in slow start, +1 per window after
+        for (int i = 0; i < newlyAcked; i++) {
+            cwnd += cwnd < ssthresh ? 1 : 1 / cwnd;
+        }
+        cwnd = Math.min(cwnd, WINDOW);
+    }
+
+    private void acknowledge(Segment segment, long now) {
+        if (segment.timer != null) {
+            segment.timer.cancel();
+            segment.timer = null;
+        }
+        if (segment.transmissions == 1) {
+            // RFC 6298; retransmitted packets are ambiguous and not sampled (Karn)
+            double sample = now - segment.sentAt;
+            if (srtt < 0) {
+                srtt = sample;
+                rttvar = sample / 2;
+            } else {
+                rttvar = 0.75 * rttvar + 0.25 * Math.abs(srtt - sample);
+                srtt = 0.875 * srtt + 0.125 * sample;
+            }
+            rto = Math.max(MIN_RTO, Math.min(MAX_RTO, (long) (srtt + Math.max(wheel.tickMillis(), 4 * rttvar))));
+        }
+    }
+
+    // ---- receiver ----
+
+    private void onDatagram(ByteBuffer in) throws IOException {
+        if (in.remaining() < 4) {
+            return;
+        }
+        byte type = in.get();
+        in.get(); // flags
+        if (type == ACK && in.remaining() >= 14) {
+            onAck(in);
+        } else if (type == DATA && in.remaining() >= 10) {
+            in.getShort();
+            onData(in);
+        }
+    }
+
+    private void onData(ByteBuffer in) {
+        int seq = in.getInt();
+        ackPending = true;
+        int slot = seq & (WINDOW - 1);
+        if (seq - rcvNext < 0 || seq - rcvNext >= WINDOW || recvSeq[slot] == seq) {
+            duplicates += seq - rcvNext < 0 || recvSeq[slot] == seq ? 1 : 0;
+            return; // old, beyond the window, or already held
+        }
+        byte[] fragment = new byte[in.remaining()]; // index, count, payload
+        in.get(fragment);
+        recvRing[slot] = fragment;
+        recvSeq[slot] = seq;
+
+        // Deliver everything that is now in order
+        while (recvSeq[rcvNext & (WINDOW - 1)] == rcvNext) {
+            int next = rcvNext & (WINDOW - 1);
+            byte[] data = recvRing[next];
+            recvRing[next] = null;
+            recvSeq[next] = -1;
+            rcvNext++;
+            int index = (data[0] & 0xFF) << 8 | data[1] & 0xFF;
+            int count = (data[2] & 0xFF) << 8 | data[3] & 0xFF;
+            reassembly.write(data, 4, data.length - 4);
+            if (index == count - 1) {
+                byte[] message = reassembly.toByteArray();
+                reassembly.reset();
+                messagesDelivered++;
+                handler.onMessage(message);
+            }
+        }
+    }
+
+    private void sendAck() throws IOException {
+        long bitmap = 0;
+        int highest = 0;
+        for (int i = 0; i < 64; i++) {
+            int seq = rcvNext + 1 + i;
+            if (recvSeq[seq & (WINDOW - 1)] == seq) {
+                bitmap |= 1L << i;
+                highest = i + 1;
+            }
+        }
+        int window = WINDOW - 1 - highest; // free ring slots beyond what is already buffered
+        ByteBuffer ack = ByteBuffer.allocate(16);
+        ack.put(ACK).put((byte) 0).putShort((short) window).putInt(rcvNext).putLong(bitmap).flip();
+        try {
+            if (channel.write(ack) > 0) {
+                ackPending = false;
+            }
+        } catch (PortUnreachableException e) {
+            ackPending = false;
+        }
+    }
+}
+
+
+f. TimingWheel.java
+
+// Hierarchical timing wheel (Varghese & Lauck). Level 0 has `slots` buckets of one tick each;
+// every level above covers `slots` times the span of the one below. Scheduling and cancelling
+// are O(1); a timer far in the future sits in a coarse level and is moved down ("cascaded")
+// as its time gets closer, so a wheel of 256 slots x 4 levels covers 2^32 ticks.
+//
+// Not thread-safe: owned by one thread, which calls advance() from its event loop.
+public class TimingWheel {
+
+    public static final class Timeout {
+        private final TimingWheel owner;
+        private final Runnable task;
+        private final long expiryTick;
+        private Timeout prev;
+        private Timeout next;
+        private Timeout[] bucket; // the level array whose list holds this timeout, null while unlinked
+        private int slot;
+        private boolean pending = true; // false once it has run or been cancelled
+
+        Timeout(TimingWheel owner, Runnable task, long expiryTick) {
+            this.owner = owner;
+            this.task = task;
+            this.expiryTick = expiryTick;
+        }
+
+        public boolean isPending() {
+            return pending;
+        }
+
+        public void cancel() {
+            if (!pending) {
+                return;
+            }
+            pending = false;
+            owner.size--;
+            if (bucket == null) {
+                return; // in a slot advance() has detached: it will skip this timeout
+            }
+            if (prev != null) {
+                prev.next = next;
+            } else {
+                bucket[slot] = next;
+            }
+            if (next != null) {
+                next.prev = prev;
+            }
+            prev = next = null;
+            bucket = null;
+        }
+    }
+
+    private final long tickMillis;
+    private final int bits;
+    private final int mask;
+    private final Timeout[][] levels;
+    private final long startMillis;
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long tickMillis, int slots, int levelCount) {
+        if (Integer.bitCount(slots) != 1) {
+            throw new IllegalArgumentException("slots must be a power of 2: " + slots);
+        }
+        this.tickMillis = tickMillis;
+        this.bits = Integer.numberOfTrailingZeros(slots);
+        this.mask = slots - 1;
+        this.levels = new Timeout[levelCount][slots];
+        this.startMillis = System.currentTimeMillis();
+    }
+
+    public long tickMillis() {
+        return tickMillis;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Runs task on the owning thread once delayMillis have passed (rounded up to a tick)
+    public Timeout schedule(Runnable task, long delayMillis) {
+        long now = System.currentTimeMillis() - startMillis;
+        long expiry = Math.max(currentTick + 1, (now + delayMillis + tickMillis - 1) / tickMillis);
+        Timeout timeout = new Timeout(this, task, expiry);
+        insert(timeout);
+        size++;
+        return timeout;
+    }
+
+    // Runs every timer that is due by nowMillis
+    public void advance(long nowMillis) {
+        long target = (nowMillis - startMillis) / tickMillis;
+        while (currentTick < target) {
+            currentTick++;
+            // Higher levels first, so their timers can land in a lower slot that is cascaded next
+            for (int level = levels.length - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (bits * level)) - 1)) == 0) {
+                    cascade(level, (int) (currentTick >>> (bits * level)) & mask);
+                }
+            }
+            Timeout[] wheel = levels[0];
+            int slot = (int) currentTick & mask;
+            Timeout head = wheel[slot];
+            wheel[slot] = null;
+            // Unlink the whole slot before running anything, so a task that cancels a later
+            // timeout in it only marks it instead of editing the list being walked
+            for (Timeout timeout = head; timeout != null; timeout = timeout.next) {
+                timeout.bucket = null;
+            }
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                timeout.prev = timeout.next = null;
+                if (!timeout.pending) {
+                    // cancelled by an earlier task in this slot
+                } else if (timeout.expiryTick > currentTick) {
+                    insert(timeout); // beyond the top level's range: goes round again
+                } else {
+                    timeout.pending = false;
+                    size--;
+                    timeout.task.run();
+                }
+                timeout = next;
+            }
+        }
+    }
+
+    private void cascade(int level, int slot) {
+        Timeout timeout = levels[level][slot];
+        levels[level][slot] = null;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            timeout.prev = timeout.next = null;
+            insert(timeout);
+            timeout = next;
+        }
+    }
+
+    private void insert(Timeout timeout) {
+        long delta = timeout.expiryTick - currentTick;
+        int level = 0;
+        while (level < levels.length - 1 && delta >= 1L << (bits * (level + 1))) {
+            level++;
+        }
+        long tick = Math.min(timeout.expiryTick, currentTick + (1L << (bits * (level + 1))) - 1);
+        int slot = (int) (tick >>> (bits * level)) & mask;
+        Timeout[] bucket = levels[level];
+        timeout.bucket = bucket;
+        timeout.slot = slot;
+        timeout.next = bucket[slot];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        bucket[slot] = timeout;
+    }
+}
+
+
+g. LossyLink.java
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+// Local UDP relay that imitates a bad network for testing: datagrams sent to it are forwarded
+// to `target` (and replies back to the last sender), but a `loss` fraction is dropped and a
+// `reorder` fraction is held back for a random 1..maxDelayMillis, so they arrive out of order.
+public class LossyLink implements Closeable {
+
+    private static final class Delayed {
+        final long release;
+        final long order;
+        final SocketAddress to;
+        final ByteBuffer data;
+
+        Delayed(long release, long order, SocketAddress to, ByteBuffer data) {
+            this.release = release;
+            this.order = order;
+            this.to = to;
+            this.data = data;
+        }
+    }
+
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final InetSocketAddress target;
+    private final double loss;
+    private final double reorder;
+    private final int maxDelayMillis;
+    private final Random random;
+    private final PriorityQueue<Delayed> held = new PriorityQueue<>((a, b) ->
+            a.release != b.release ? Long.compare(a.release, b.release) : Long.compare(a.order, b.order));
+    private final Thread thread;
+    private volatile boolean running = true;
+    private SocketAddress client;
+    private long forwarded;
+    private long dropped;
+    private long delayed;
+    private long order;
+
+    public LossyLink(InetSocketAddress listen, InetSocketAddress target, double loss, double reorder, int maxDelayMillis, long seed)
+            throws IOException {
+        this.channel = DatagramChannel.open().bind(listen);
+        this.channel.configureBlocking(false);
+        this.selector = Selector.open();
+        this.channel.register(selector, SelectionKey.OP_READ);
+        this.target = target;
+        this.loss = loss;
+        this.reorder = reorder;
+        this.maxDelayMillis = Math.max(1, maxDelayMillis);
+        this.random = new Random(seed);
+        this.thread = new Thread(this::run, "lossy-link");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public InetSocketAddress getLocalAddress() throws IOException {
+        return (InetSocketAddress) channel.getLocalAddress();
+    }
+
+    public synchronized String stats() {
+        return forwarded + " forwarded, " + dropped + " dropped, " + delayed + " delayed";
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.close();
+        channel.close();
+    }
+
+    private void run() {
+        ByteBuffer in = ByteBuffer.allocate(65536);
+        try {
+            while (running) {
+                long now = System.currentTimeMillis();
+                selector.select(held.isEmpty() ? 0 : Math.max(1, held.peek().release - now));
+                selector.selectedKeys().clear();
+
+                now = System.currentTimeMillis();
+                for (in.clear(); ; in.clear()) {
+                    SocketAddress from = channel.receive(in);
+                    if (from == null) {
+                        break;
+                    }
+                    in.flip();
+                    relay(from, in, now);
+                }
+                while (!held.isEmpty() && held.peek().release <= now) {
+                    Delayed d = held.poll();
+                    channel.send(d.data, d.to);
+                }
+            }
+        } catch (IOException | java.nio.channels.ClosedSelectorException e) {
+            if (running) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private synchronized void relay(SocketAddress from, ByteBuffer in, long now) throws IOException {
+        SocketAddress to;
+        if (from.equals(target)) {
+            to = client;
+        } else {
+            client = from;
+            to = target;
+        }
+        if (to == null) {
+            return;
+        }
+        if (random.nextDouble() < loss) {
+            dropped++;
+            return;
+        }
+        forwarded++;
+        if (random.nextDouble() < reorder) {
+            delayed++;
+            ByteBuffer copy = ByteBuffer.allocate(in.remaining()).put(in);
+            copy.flip();
+            held.add(new Delayed(now + 1 + random.nextInt(maxDelayMillis), order++, to, copy));
+        } else {
+            channel.send(in, to);
+        }
+    }
+}
@@ -0,0 +1,1242 @@
+a. Weblog.java
+
+import java.io.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Rewrites the IP at the start of each access-log line (e.g. Weblog.txt) to its hostname.
+//
+// Three stages, so DNS round-trips overlap instead of adding up:
+//   reader   - reads lines and asks the cache for each IP's hostname (a future)
+//   resolver - a pool of workers doing the actual reverse lookups; the cache makes sure each
+//              IP is looked up once, even if many lines ask for it at the same time
+//   writer   - takes the futures in line order, so the output keeps the input order
+// The queue between reader and writer is bounded, so memory use does not depend on file size.
+//
+//   java -Dweblog.threads=64 Weblog access.log > resolved.log
+//   java -Dweblog.resolver=stub -Dweblog.stubDelay=20 Weblog Weblog.txt   (no network needed)
+public class Weblog {
+    public static void main(String[] args) throws Exception {
+        int threads = Integer.getInteger("weblog.threads", 64);
+        int window = Integer.getInteger("weblog.window", 10_000); // lines in flight between reader and writer
+
+        HostnameResolver resolver = System.getProperty("weblog.resolver", "system").equals("stub")
+                ? HostnameResolver.stub(Integer.getInteger("weblog.stubDelay", 0))
+                : HostnameResolver.SYSTEM;
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        ResolverCache cache = new ResolverCache(resolver, workers,
+                Long.getLong("weblog.positiveTtl", 3_600_000), Long.getLong("weblog.negativeTtl", 60_000), 1_000_000);
+
+        BlockingQueue<Line> pending = new ArrayBlockingQueue<>(window);
+        Line end = new Line(null, null, null);
+
+        // Writer stage: waits for each line's hostname in the original order
+        Thread writer = new Thread(() -> {
+            try (PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16))) {
+                for (Line line = pending.take(); line != end; line = pending.take()) {
+                    String host = line.host.join();
+                    out.println(host != null ? host + line.rest : line.entry); // unresolvable: original entry
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }, "weblog-writer");
+        writer.start();
+
+        // Reader stage
+        try (BufferedReader bin = new BufferedReader(new InputStreamReader(new FileInputStream(args[0])), 1 << 16)) {
+            for (String entry = bin.readLine(); entry != null; entry = bin.readLine()) {
+                // Extract IP (first word before space)
+                int index = entry.indexOf(' ');
+                if (index < 0) {
+                    pending.put(new Line(entry, CompletableFuture.completedFuture(null), null));
+                    continue;
+                }
+                String ip = entry.substring(0, index);
+                pending.put(new Line(entry, cache.lookup(ip), entry.substring(index)));
+            }
+        } catch (IOException ex) {
+            System.err.println("Exception: " + ex);
+        } finally {
+            pending.put(end);
+            writer.join();
+            workers.shutdown();
+        }
+        System.err.println(cache.stats());
+    }
+
+    private static final class Line {
+        final String entry;
+        final CompletableFuture<String> host;
+        final String rest;
+
+        Line(String entry, CompletableFuture<String> host, String rest) {
+            this.entry = entry;
+            this.host = host;
+            this.rest = rest;
+        }
+    }
+}
+
+
+b. HostnameResolver.java
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+// Reverse lookup of an IP address. SYSTEM uses the JVM's resolver; stub() never touches the
+// network, so the pipeline can be tested and measured offline.
+public interface HostnameResolver {
+
+    // The hostname for ip, or ip itself if it has no reverse entry
+    String reverseLookup(String ip) throws UnknownHostException;
+
+    HostnameResolver SYSTEM = ip -> InetAddress.getByName(ip).getHostName();
+
+    // Answers "host-<ip with dashes>.example" after delayMillis, to simulate a DNS round-trip
+    static HostnameResolver stub(int delayMillis) {
+        return ip -> {
+            if (delayMillis > 0) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return "host-" + ip.replace('.', '-').replace(':', '-') + ".example";
+        };
+    }
+}
+
+
+c. ResolverCache.java
+
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// Hostname cache keyed by IP, shared by every thread.
+// - A lookup already in flight is shared: concurrent callers for one IP get the same future.
+// - Hostnames are kept for positiveTtl; failed lookups (no reverse entry) for the shorter
+//   negativeTtl, so a missing entry is not retried on every line.
+// - Past maxEntries, one thread trims the cache to 90% of it, so the full scan that costs is
+//   paid once per maxEntries / 10 misses rather than on every miss.
+// The future completes with the hostname, or null if the lookup failed.
+public class ResolverCache {
+    private final HostnameResolver resolver;
+    private final Executor executor;
+    private final long positiveTtlMillis;
+    private final long negativeTtlMillis;
+    private final int maxEntries;
+    private final int lowWater;
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public ResolverCache(HostnameResolver resolver, Executor executor, long positiveTtlMillis, long negativeTtlMillis, int maxEntries) {
+        this.resolver = resolver;
+        this.executor = executor;
+        this.positiveTtlMillis = positiveTtlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.maxEntries = maxEntries;
+        this.lowWater = maxEntries - Math.max(1, maxEntries / 10);
+    }
+
+    public CompletableFuture<String> lookup(String ip) {
+        long now = System.currentTimeMillis();
+        Entry fresh = null;
+        while (true) {
+            Entry entry = entries.get(ip);
+            if (entry != null && !entry.isExpired(now)) {
+                hits.increment();
+                return entry.host;
+            }
+            // Replace a missing or expired entry. Only the thread whose entry went into the map
+            // resolves; one that lost a race (or saw the entry evicted meanwhile) looks again.
+            if (fresh == null) {
+                fresh = new Entry();
+            }
+            if (entry == null ? entries.putIfAbsent(ip, fresh) == null : entries.replace(ip, entry, fresh)) {
+                break;
+            }
+        }
+
+        misses.increment();
+        if (entries.size() > maxEntries && evicting.compareAndSet(false, true)) {
+            try {
+                evict(now);
+            } finally {
+                evicting.set(false);
+            }
+        }
+        Entry resolving = fresh;
+        executor.execute(() -> resolve(ip, resolving));
+        return fresh.host;
+    }
+
+    private void resolve(String ip, Entry entry) {
+        String host = null;
+        try {
+            host = resolver.reverseLookup(ip);
+            if (host.equals(ip)) {
+                host = null; // the system resolver answers with the IP itself when there is no name
+            }
+        } catch (UnknownHostException | RuntimeException e) {
+            host = null;
+        }
+        if (host == null) {
+            failures.increment();
+        }
+        entry.expiresAt = System.currentTimeMillis() + (host != null ? positiveTtlMillis : negativeTtlMillis);
+        entry.host.complete(host);
+    }
+
+    // Drops expired entries, then arbitrary completed ones, until the cache is down to lowWater.
+    // Lookups still in flight stay, so callers for those IPs keep sharing one query.
+    // Callers racing with it skip eviction; the cache overshoots by at most their misses.
+    private void evict(long now) {
+        entries.values().removeIf(entry -> entry.isExpired(now));
+        Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() > lowWater && it.hasNext()) {
+            if (it.next().host.isDone()) {
+                it.remove();
+            }
+        }
+    }
+
+    public String stats() {
+        return "resolver cache: entries=" + entries.size() + " hits=" + hits.sum()
+                + " lookups=" + misses.sum() + " failed=" + failures.sum();
+    }
+
+    private static final class Entry {
+        final CompletableFuture<String> host = new CompletableFuture<>();
+        volatile long expiresAt = Long.MAX_VALUE; // no expiry while the lookup is in flight
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
+
+
+d. LogParser.java
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+// Parallel parser for common-log-format files (like Weblog.txt). The file is memory-mapped in
+// chunks that end on a newline, and the chunks are parsed in parallel on a fork/join pool.
+// Each line is handed to the caller as a LogRecord: a reused view holding offsets into the
+// mapped bytes, so parsing a line creates no Strings.
+//
+// Results are built like a Collector: one accumulator per chunk, combined pairwise.
+//
+//   java LogParser access.log   (prints line count, byte total and time taken)
+public class LogParser {
+    public static final int DEFAULT_CHUNK_SIZE = 32 * 1024 * 1024;
+
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+    private final LongAdder records = new LongAdder();
+    private final LongAdder malformed = new LongAdder();
+
+    public LogParser() {
+        this(DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    public LogParser(int chunkSize, ForkJoinPool pool) {
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+    }
+
+    public static void main(String[] args) throws IOException {
+        long start = System.nanoTime();
+        LogParser parser = new LogParser();
+        long[] totals = parser.parse(Paths.get(args[0]),
+                () -> new long[1],
+                (sum, record) -> sum[0] += record.bytes(),
+                (a, b) -> { a[0] += b[0]; return a; });
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println(parser.getRecordCount() + " records, " + parser.getMalformedCount()
+                + " malformed, " + totals[0] + " bytes served, parsed in " + millis + " ms");
+    }
+
+    // Parses every line of the file. The LogRecord passed to accumulator is only valid
+    // during that call; copy out anything that must outlive it.
+    public <A> A parse(Path file, Supplier<A> supplier, BiConsumer<A, LogRecord> accumulator, BinaryOperator<A> combiner) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = chunkBoundaries(channel);
+            if (bounds.length < 2) {
+                return supplier.get(); // empty file
+            }
+            return pool.invoke(new ChunkTask<>(channel, bounds, 0, bounds.length - 1, supplier, accumulator, combiner));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public long getRecordCount() {
+        return records.sum();
+    }
+
+    public long getMalformedCount() {
+        return malformed.sum();
+    }
+
+    // Chunk start offsets plus the file size: roughly chunkSize apart, each moved forward
+    // to just after the next newline so no line is split between two chunks
+    private long[] chunkBoundaries(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return new long[0];
+        }
+        int count = (int) ((size + chunkSize - 1) / chunkSize);
+        long[] bounds = new long[count + 1];
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        int n = 1;
+        for (int i = 1; i < count; i++) {
+            long position = Math.max((long) i * chunkSize, bounds[n - 1]);
+            long boundary = size;
+            search:
+            while (position < size) {
+                probe.clear();
+                int read = channel.read(probe, position);
+                for (int j = 0; j < read; j++) {
+                    if (probe.get(j) == '\n') {
+                        boundary = position + j + 1;
+                        break search;
+                    }
+                }
+                position += read;
+            }
+            if (boundary > bounds[n - 1] && boundary < size) {
+                bounds[n++] = boundary;
+            }
+        }
+        bounds[n++] = size;
+        return java.util.Arrays.copyOf(bounds, n);
+    }
+
+    // Never serialized, but RecursiveTask is Serializable
+    private final class ChunkTask<A> extends RecursiveTask<A> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long[] bounds;
+        private final int from;
+        private final int to;
+        private final Supplier<A> supplier;
+        private final BiConsumer<A, LogRecord> accumulator;
+        private final BinaryOperator<A> combiner;
+
+        ChunkTask(FileChannel channel, long[] bounds, int from, int to,
+                  Supplier<A> supplier, BiConsumer<A, LogRecord> accumulator, BinaryOperator<A> combiner) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected A compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                ChunkTask<A> left = new ChunkTask<>(channel, bounds, from, mid, supplier, accumulator, combiner);
+                ChunkTask<A> right = new ChunkTask<>(channel, bounds, mid, to, supplier, accumulator, combiner);
+                left.fork();
+                A rightResult = right.compute();
+                return combiner.apply(left.join(), rightResult);
+            }
+            try {
+                return parseChunk(bounds[from], bounds[to]);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private A parseChunk(long start, long end) throws IOException {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            A result = supplier.get();
+            LogRecord record = new LogRecord();
+            long count = 0;
+            long bad = 0;
+
+            int limit = buffer.limit();
+            int lineStart = 0;
+            while (lineStart < limit) {
+                int lineEnd = lineStart;
+                while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                int next = lineEnd + 1;
+                if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                    lineEnd--;
+                }
+                if (lineEnd > lineStart) {
+                    if (record.parse(buffer, lineStart, lineEnd)) {
+                        accumulator.accept(result, record);
+                        count++;
+                    } else {
+                        bad++;
+                    }
+                }
+                lineStart = next;
+            }
+            records.add(count);
+            malformed.add(bad);
+            return result;
+        }
+    }
+}
+
+
+e. LogRecord.java
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// One common-log-format line:
+//   ip ident user [10/Oct/2023:13:55:36 -0700] "METHOD /path PROTOCOL" status bytes
+// held as offsets into the buffer it was parsed from. Status, byte count, timestamp, IPv4
+// address and a path hash are available as numbers; the String accessors allocate.
+public class LogRecord {
+    private static final byte[] MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec".getBytes(StandardCharsets.US_ASCII);
+
+    private ByteBuffer buffer;
+    private int ipStart;
+    private int ipEnd;
+    private int userStart;
+    private int userEnd;
+    private int timeStart;
+    private int timeEnd;
+    private int methodStart;
+    private int methodEnd;
+    private int pathStart;
+    private int pathEnd;
+    private int status;
+    private long bytes;
+
+    // Parses buffer[start, end) (no line terminator). Returns false for a malformed line.
+    boolean parse(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        ipStart = start;
+        ipEnd = indexOf(' ', start, end);
+        int identEnd = indexOf(' ', ipEnd + 1, end);
+        userStart = identEnd + 1;
+        userEnd = indexOf(' ', userStart, end);
+        if (ipEnd < 0 || identEnd < 0 || userEnd < 0 || userEnd + 1 >= end || buffer.get(userEnd + 1) != '[') {
+            return false;
+        }
+
+        timeStart = userEnd + 2;
+        timeEnd = indexOf(']', timeStart, end);
+        if (timeEnd < 0 || timeEnd + 2 >= end || buffer.get(timeEnd + 2) != '"') {
+            return false;
+        }
+
+        int requestStart = timeEnd + 3;
+        int requestEnd = indexOf('"', requestStart, end);
+        if (requestEnd < 0) {
+            return false;
+        }
+        methodStart = requestStart;
+        methodEnd = indexOf(' ', requestStart, requestEnd);
+        if (methodEnd < 0) {
+            methodEnd = requestEnd; // request is just a method or garbage
+            pathStart = pathEnd = requestEnd;
+        } else {
+            pathStart = methodEnd + 1;
+            pathEnd = indexOf(' ', pathStart, requestEnd);
+            if (pathEnd < 0) {
+                pathEnd = requestEnd; // HTTP/0.9 style request without protocol
+            }
+        }
+
+        int statusStart = requestEnd + 2;
+        int statusEnd = indexOf(' ', statusStart, end);
+        if (statusStart >= end || statusEnd < 0) {
+            return false;
+        }
+        long parsedStatus = parseNumber(statusStart, statusEnd);
+        long parsedBytes = parseNumber(statusEnd + 1, end);
+        if (parsedStatus < 0 || parsedBytes < 0 && !(end - statusEnd == 2 && buffer.get(end - 1) == '-')) {
+            return false;
+        }
+        status = (int) parsedStatus;
+        bytes = Math.max(parsedBytes, 0); // "-" means no body
+        return true;
+    }
+
+    public int status() {
+        return status;
+    }
+
+    public long bytes() {
+        return bytes;
+    }
+
+    // IPv4 address as an unsigned 32-bit value, or -1 if the address is not dotted IPv4
+    public long ipv4() {
+        long address = 0;
+        int octet = 0;
+        int dots = 0;
+        int digits = 0;
+        for (int i = ipStart; i < ipEnd; i++) {
+            byte b = buffer.get(i);
+            if (b == '.') {
+                if (digits == 0 || ++dots > 3) {
+                    return -1;
+                }
+                address = address << 8 | octet;
+                octet = 0;
+                digits = 0;
+            } else if (b >= '0' && b <= '9' && digits < 3) {
+                octet = octet * 10 + (b - '0');
+                digits++;
+                if (octet > 255) {
+                    return -1;
+                }
+            } else {
+                return -1;
+            }
+        }
+        return dots == 3 && digits > 0 ? address << 8 | octet : -1;
+    }
+
+    // Seconds since the epoch of the [timestamp] field, honouring its zone offset
+    public long epochSecond() {
+        int p = timeStart; // dd/MMM/yyyy:HH:mm:ss +hhmm
+        int day = (int) parseNumber(p, p + 2);
+        int month = month(p + 3);
+        int year = (int) parseNumber(p + 7, p + 11);
+        long seconds = parseNumber(p + 12, p + 14) * 3600 + parseNumber(p + 15, p + 17) * 60 + parseNumber(p + 18, p + 20);
+        long offset = 0;
+        if (timeEnd - p >= 26) {
+            offset = parseNumber(p + 22, p + 24) * 3600 + parseNumber(p + 24, p + 26) * 60;
+            if (buffer.get(p + 21) == '-') {
+                offset = -offset;
+            }
+        }
+        return daysFromCivil(year, month, day) * 86400 + seconds - offset;
+    }
+
+    // 64-bit FNV-1a hashes of the path and IP bytes, for counting them without building Strings
+    public long pathHash() {
+        return hash(pathStart, pathEnd);
+    }
+
+    public long ipHash() {
+        return hash(ipStart, ipEnd);
+    }
+
+    public String ip() {
+        return string(ipStart, ipEnd);
+    }
+
+    public String user() {
+        return string(userStart, userEnd);
+    }
+
+    public String timestamp() {
+        return string(timeStart, timeEnd);
+    }
+
+    public String method() {
+        return string(methodStart, methodEnd);
+    }
+
+    public String path() {
+        return string(pathStart, pathEnd);
+    }
+
+    private String string(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private long hash(int from, int to) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = from; i < to; i++) {
+            hash ^= buffer.get(i) & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Non-negative decimal in [from, to), or -1 if it is not one
+    private long parseNumber(int from, int to) {
+        if (from >= to) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private int month(int at) {
+        for (int m = 0; m < 12; m++) {
+            if (buffer.get(at) == MONTHS[m * 3] && buffer.get(at + 1) == MONTHS[m * 3 + 1] && buffer.get(at + 2) == MONTHS[m * 3 + 2]) {
+                return m + 1;
+            }
+        }
+        return 1;
+    }
+
+    // Days since 1970-01-01 for a proleptic Gregorian date
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
+
+
+f. LogStats.java
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+// Access-log analytics computed while LogParser walks the file:
+//   top IPs by bytes served      - Space-Saving summary keyed by the IPv4 address
+//   top paths by hits            - Space-Saving summary keyed by a path hash, with a
+//                                  Count-Min sketch as a second (upper-bound) estimate
+//   status codes per minute      - primitive long->long map keyed by (minute, status)
+//   response size percentiles    - log-linear (HDR-style) histogram
+// One LogStats is built per chunk and they are merged, so memory depends on the number of
+// top-K slots and minutes in the log, not on the number of lines or distinct IPs and paths.
+//
+//   java -Dstats.top=100 LogStats access.log
+public class LogStats {
+    private static final int TOP = Integer.getInteger("stats.top", 100);
+
+    private final SpaceSaving ipBytes = new SpaceSaving(TOP * 10);
+    private final SpaceSaving pathHits = new SpaceSaving(TOP * 10);
+    private final CountMinSketch pathSketch = new CountMinSketch(4, 1 << 16);
+    private final LongLongMap statusByMinute = new LongLongMap(1024);
+    private final LogLinearHistogram sizes = new LogLinearHistogram();
+    private long records;
+
+    public static void main(String[] args) throws IOException {
+        long start = System.nanoTime();
+        LogParser parser = new LogParser();
+        LogStats stats = parser.parse(Paths.get(args[0]), LogStats::new, LogStats::accept, LogStats::merge);
+        stats.report(System.out);
+        System.out.println();
+        System.out.println(parser.getMalformedCount() + " malformed lines skipped, "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    public void accept(LogRecord record) {
+        records++;
+
+        long ip = record.ipv4();
+        long ipKey = ip >= 0 ? ip : record.ipHash() | Long.MIN_VALUE; // IPv4 keys never set the top bit
+        if (ipBytes.add(ipKey, record.bytes()) && ip < 0) {
+            ipBytes.label(ipKey, record.ip());
+        }
+
+        long path = record.pathHash();
+        pathSketch.add(path, 1);
+        if (pathHits.add(path, 1)) {
+            pathHits.label(path, record.path()); // only when the path enters the summary
+        }
+
+        long minute = Math.floorDiv(record.epochSecond(), 60);
+        statusByMinute.add(minute << 10 | Math.min(record.status(), 1023), 1);
+
+        sizes.record(record.bytes());
+    }
+
+    public LogStats merge(LogStats other) {
+        records += other.records;
+        ipBytes.merge(other.ipBytes);
+        pathHits.merge(other.pathHits);
+        pathSketch.merge(other.pathSketch);
+        other.statusByMinute.forEach(statusByMinute::add);
+        sizes.merge(other.sizes);
+        return this;
+    }
+
+    public void report(PrintStream out) {
+        out.println(records + " records");
+
+        out.println();
+        out.println("Top " + TOP + " IPs by bytes (bytes, max overcount)");
+        for (SpaceSaving.Entry e : ipBytes.top(TOP)) {
+            String ip = e.key >= 0 ? ipv4(e.key) : e.label;
+            out.println("  " + ip + "  " + e.count + "  " + e.error);
+        }
+
+        out.println();
+        out.println("Top " + TOP + " paths by hits (hits, max overcount, sketch estimate)");
+        for (SpaceSaving.Entry e : pathHits.top(TOP)) {
+            out.println("  " + e.label + "  " + e.count + "  " + e.error + "  " + pathSketch.estimate(e.key));
+        }
+
+        out.println();
+        out.println("Status codes per minute");
+        List<long[]> cells = new ArrayList<>(statusByMinute.size());
+        statusByMinute.forEach((key, count) -> cells.add(new long[] {key, count}));
+        cells.sort((a, b) -> Long.compare(a[0], b[0]));
+        long currentMinute = Long.MIN_VALUE;
+        StringBuilder line = new StringBuilder();
+        for (long[] cell : cells) {
+            long minute = cell[0] >> 10;
+            if (minute != currentMinute) {
+                if (line.length() > 0) {
+                    out.println(line);
+                }
+                line.setLength(0);
+                line.append("  ").append(Instant.ofEpochSecond(minute * 60));
+                currentMinute = minute;
+            }
+            line.append("  ").append(cell[0] & 1023).append('=').append(cell[1]);
+        }
+        if (line.length() > 0) {
+            out.println(line);
+        }
+
+        out.println();
+        out.println("Response size: min " + sizes.min() + ", p50 " + sizes.percentile(50) + ", p90 " + sizes.percentile(90)
+                + ", p99 " + sizes.percentile(99) + ", p99.9 " + sizes.percentile(99.9) + ", max " + sizes.max()
+                + ", mean " + (long) sizes.mean());
+    }
+
+    private static String ipv4(long address) {
+        return (address >>> 24 & 0xFF) + "." + (address >>> 16 & 0xFF) + "." + (address >>> 8 & 0xFF) + "." + (address & 0xFF);
+    }
+}
+
+
+g. SpaceSaving.java
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Space-Saving top-K summary (Metwally et al.) over long keys with weights. Keeps at most
+// capacity counters in a min-heap; an unseen key replaces the smallest counter and inherits
+// its count as its error. Any key whose true total exceeds total/capacity is guaranteed to be
+// present, and each count over-estimates the truth by at most its error.
+//
+// Summaries of separate chunks merge (Agarwal et al.): a key missing from one side is assumed
+// to have that side's minimum count, and the largest capacity counters are kept.
+public class SpaceSaving {
+    public static final class Entry {
+        public final long key;
+        public final long count;
+        public final long error;
+        public final String label;
+
+        Entry(long key, long count, long error, String label) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+            this.label = label;
+        }
+    }
+
+    private final int capacity;
+    private final long[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    private final String[] labels;
+    private final LongLongMap positions; // key -> heap index
+    private int size;
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.labels = new String[capacity];
+        this.positions = new LongLongMap(capacity);
+    }
+
+    // Returns true if key was not tracked before this call, so the caller can label it
+    public boolean add(long key, long weight) {
+        int i = (int) positions.get(key, -1);
+        if (i >= 0) {
+            counts[i] += weight;
+            siftDown(i);
+            return false;
+        }
+        if (size < capacity) {
+            i = size++;
+            keys[i] = key;
+            counts[i] = weight;
+            errors[i] = 0;
+            labels[i] = null;
+            positions.put(key, i);
+            siftUp(i);
+            return true;
+        }
+        // Evict the minimum, which is at the root
+        positions.remove(keys[0]);
+        keys[0] = key;
+        errors[0] = counts[0];
+        counts[0] += weight;
+        labels[0] = null;
+        positions.put(key, 0);
+        siftDown(0);
+        return true;
+    }
+
+    public void label(long key, String label) {
+        int i = (int) positions.get(key, -1);
+        if (i >= 0) {
+            labels[i] = label;
+        }
+    }
+
+    public void merge(SpaceSaving other) {
+        long minThis = size == capacity ? counts[0] : 0;
+        long minOther = other.size == other.capacity ? other.counts[0] : 0;
+
+        int n = 0;
+        int total = size + other.size;
+        long[] mergedKeys = new long[total];
+        long[] mergedCounts = new long[total];
+        long[] mergedErrors = new long[total];
+        String[] mergedLabels = new String[total];
+        for (int i = 0; i < size; i++) {
+            int j = (int) other.positions.get(keys[i], -1);
+            mergedKeys[n] = keys[i];
+            mergedCounts[n] = counts[i] + (j >= 0 ? other.counts[j] : minOther);
+            mergedErrors[n] = errors[i] + (j >= 0 ? other.errors[j] : minOther);
+            mergedLabels[n] = labels[i] != null || j < 0 ? labels[i] : other.labels[j];
+            n++;
+        }
+        for (int j = 0; j < other.size; j++) {
+            if (positions.get(other.keys[j], -1) < 0) {
+                mergedKeys[n] = other.keys[j];
+                mergedCounts[n] = other.counts[j] + minThis;
+                mergedErrors[n] = other.errors[j] + minThis;
+                mergedLabels[n] = other.labels[j];
+                n++;
+            }
+        }
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(mergedCounts[b], mergedCounts[a]));
+
+        positions.clear();
+        size = Math.min(n, capacity);
+        for (int i = 0; i < size; i++) {
+            int from = order[i];
+            keys[i] = mergedKeys[from];
+            counts[i] = mergedCounts[from];
+            errors[i] = mergedErrors[from];
+            labels[i] = mergedLabels[from];
+        }
+        // Descending order is a max-heap; reverse it into a valid min-heap
+        for (int i = 0, j = size - 1; i < j; i++, j--) {
+            swap(i, j);
+        }
+        for (int i = 0; i < size; i++) {
+            positions.put(keys[i], i);
+        }
+    }
+
+    // The n largest counters, largest first
+    public List<Entry> top(int n) {
+        List<Entry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(new Entry(keys[i], counts[i], errors[i], labels[i]));
+        }
+        entries.sort((a, b) -> Long.compare(b.count, a.count));
+        return entries.subList(0, Math.min(n, entries.size()));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (counts[parent] <= counts[i]) {
+                break;
+            }
+            swapTracked(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swapTracked(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swapTracked(int a, int b) {
+        swap(a, b);
+        positions.put(keys[a], a);
+        positions.put(keys[b], b);
+    }
+
+    private void swap(int a, int b) {
+        long k = keys[a]; keys[a] = keys[b]; keys[b] = k;
+        long c = counts[a]; counts[a] = counts[b]; counts[b] = c;
+        long e = errors[a]; errors[a] = errors[b]; errors[b] = e;
+        String l = labels[a]; labels[a] = labels[b]; labels[b] = l;
+    }
+}
+
+
+h. CountMinSketch.java
+
+// Count-Min sketch: depth rows of width counters; an item adds to one counter per row and its
+// estimate is the smallest of those counters. Never under-estimates; over-estimates by at most
+// total * e / width with probability 1 - exp(-depth). Sketches of the same shape merge by adding.
+public class CountMinSketch {
+    private final int depth;
+    private final int mask;
+    private final long[] table;
+
+    public CountMinSketch(int depth, int width) {
+        if (Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("width must be a power of 2: " + width);
+        }
+        this.depth = depth;
+        this.mask = width - 1;
+        this.table = new long[depth * width];
+    }
+
+    public void add(long hash, long count) {
+        for (int row = 0; row < depth; row++) {
+            table[index(row, hash)] += count;
+        }
+    }
+
+    public long estimate(long hash) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, table[index(row, hash)]);
+        }
+        return min;
+    }
+
+    public void merge(CountMinSketch other) {
+        if (other.table.length != table.length || other.depth != depth) {
+            throw new IllegalArgumentException("sketch shapes differ");
+        }
+        for (int i = 0; i < table.length; i++) {
+            table[i] += other.table[i];
+        }
+    }
+
+    private int index(int row, long hash) {
+        long h = (hash + row * 0x9E3779B97F4A7C15L) * 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 31;
+        return row * (mask + 1) + ((int) h & mask);
+    }
+}
+
+
+i. LogLinearHistogram.java
+
+// HDR-style histogram of non-negative longs. Values below 32 get their own bucket; above that
+// each power of two is split into 16 buckets, so any recorded value is reported within about
+// 6% using a fixed 960-entry array. Not thread-safe; histograms merge by adding buckets.
+public class LogLinearHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int HALF = 1 << (SUB_BITS - 1);
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * HALF;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    public void record(long value) {
+        record(value, 1);
+    }
+
+    public void record(long value, long count) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[index(value)] += count;
+        total += count;
+        sum += value * count;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void merge(LogLinearHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    // Smallest bucket value such that at least percent% of recorded values are <= it
+    public long percentile(double percent) {
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percent / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(highestEquivalent(i), max);
+            }
+        }
+        return max;
+    }
+
+    public long count() {
+        return total;
+    }
+
+    public long min() {
+        return total == 0 ? 0 : min;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    public double mean() {
+        return total == 0 ? 0 : (double) sum / total;
+    }
+
+    static int index(long value) {
+        if (value < 2 * HALF) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    static long highestEquivalent(int index) {
+        if (index < 2 * HALF) {
+            return index;
+        }
+        int shift = index / HALF - 1;
+        long top = index - (long) shift * HALF;
+        return ((top + 1) << shift) - 1;
+    }
+}
+
+
+j. LongLongMap.java
+
+import java.util.Arrays;
+
+// Open-addressing long -> long hash map (linear probing, backward-shift deletion), so hot
+// counting loops don't box keys or allocate entries.
+public class LongLongMap {
+    public interface Visitor {
+        void accept(long key, long value);
+    }
+
+    private static final long FREE = Long.MIN_VALUE; // Long.MIN_VALUE itself is stored separately
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private boolean hasFreeKey;
+    private long freeKeyValue;
+
+    public LongLongMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    public long get(long key, long missing) {
+        if (key == FREE) {
+            return hasFreeKey ? freeKeyValue : missing;
+        }
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+            if (keys[i] == FREE) {
+                return missing;
+            }
+        }
+    }
+
+    public void put(long key, long value) {
+        if (key == FREE) {
+            size += hasFreeKey ? 0 : 1;
+            hasFreeKey = true;
+            freeKeyValue = value;
+            return;
+        }
+        int i = slot(key);
+        while (keys[i] != FREE && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        values[i] = value;
+        if (keys[i] == FREE) {
+            keys[i] = key;
+            if (++size > (mask + 1) / 2) {
+                rehash();
+            }
+        }
+    }
+
+    public void add(long key, long delta) {
+        if (key == FREE) {
+            put(key, (hasFreeKey ? freeKeyValue : 0) + delta);
+            return;
+        }
+        int i = slot(key);
+        while (keys[i] != FREE && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == key) {
+            values[i] += delta;
+        } else {
+            put(key, delta);
+        }
+    }
+
+    public boolean remove(long key) {
+        if (key == FREE) {
+            boolean had = hasFreeKey;
+            size -= had ? 1 : 0;
+            hasFreeKey = false;
+            return had;
+        }
+        int i = slot(key);
+        while (keys[i] != key) {
+            if (keys[i] == FREE) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        // Shift later entries of the probe run back so lookups never stop early
+        for (int j = (i + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = FREE;
+        size--;
+        return true;
+    }
+
+    public void forEach(Visitor visitor) {
+        if (hasFreeKey) {
+            visitor.accept(FREE, freeKeyValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                visitor.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+        hasFreeKey = false;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ h >>> 32) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        size = hasFreeKey ? 1 : 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
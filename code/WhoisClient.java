@@ -0,0 +1,324 @@
+a. WhoisClient.java
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Whois (RFC 3912) lookups on a bounded pool of worker threads, never on the caller's thread.
+//
+// - The protocol is one query per TCP connection (the server closes after answering), so there
+//   is nothing to keep pooled; instead the pool size bounds how many connections are open to
+//   the server at once, and the queue bounds how many lookups may wait.
+// - Results are cached for whois.ttl ms in an LRU map of at most whois.cacheSize domains. A
+//   lookup already in flight is shared by everyone asking for the same domain.
+// - lookup(domain, listener) passes the response to the listener chunk by chunk as it arrives.
+//
+// Properties: whois.server (whois.verisign-grs.com), whois.port (43), whois.threads (32),
+// whois.queue (10000), whois.timeout ms (10000), whois.ttl ms (3600000), whois.cacheSize (10000).
+public class WhoisClient implements Closeable {
+
+    public interface Listener {
+        // Called on a worker thread with each piece of the response as it is read
+        void onText(String text);
+    }
+
+    private static final class CacheEntry {
+        final CompletableFuture<String> result;
+        volatile long expiresAt = Long.MAX_VALUE; // set when the lookup completes
+
+        CacheEntry(CompletableFuture<String> result) {
+            this.result = result;
+        }
+    }
+
+    private final String server;
+    private final int port;
+    private final int timeoutMillis;
+    private final long ttlMillis;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, CacheEntry> cache;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public WhoisClient(String server, int port, int threads, int queueCapacity, int timeoutMillis, long ttlMillis, int cacheSize) {
+        this.server = server;
+        this.port = port;
+        this.timeoutMillis = timeoutMillis;
+        this.ttlMillis = ttlMillis;
+        AtomicInteger ids = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread t = new Thread(r, "whois-" + ids.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public static WhoisClient fromSystemProperties() {
+        return new WhoisClient(System.getProperty("whois.server", "whois.verisign-grs.com"),
+                Integer.getInteger("whois.port", 43),
+                Integer.getInteger("whois.threads", 32),
+                Integer.getInteger("whois.queue", 10_000),
+                Integer.getInteger("whois.timeout", 10_000),
+                Long.getLong("whois.ttl", 3_600_000),
+                Integer.getInteger("whois.cacheSize", 10_000));
+    }
+
+    public String getServer() {
+        return server + ":" + port;
+    }
+
+    public CompletableFuture<String> lookup(String domain) {
+        return lookup(domain, null);
+    }
+
+    // The future completes with the whole response. If the answer comes from the cache or from
+    // a lookup someone else started, the listener gets it in one piece.
+    public CompletableFuture<String> lookup(String domain, Listener listener) {
+        String key = domain.trim().toLowerCase();
+        CompletableFuture<String> result;
+        synchronized (cache) {
+            CacheEntry entry = cache.get(key);
+            if (entry != null && System.currentTimeMillis() < entry.expiresAt) {
+                hits.increment();
+                return listener == null ? entry.result : entry.result.thenApply(text -> {
+                    listener.onText(text);
+                    return text;
+                });
+            }
+            misses.increment();
+            result = new CompletableFuture<>();
+            cache.put(key, new CacheEntry(result));
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    String text = query(key, listener);
+                    CacheEntry entry;
+                    synchronized (cache) {
+                        entry = cache.get(key);
+                    }
+                    if (entry != null && entry.result == result) {
+                        entry.expiresAt = System.currentTimeMillis() + ttlMillis;
+                    }
+                    result.complete(text);
+                } catch (IOException | RuntimeException e) {
+                    fail(key, result, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            fail(key, result, new IOException("too many whois lookups queued", e));
+        }
+        return result;
+    }
+
+    public String stats() {
+        int cached;
+        synchronized (cache) {
+            cached = cache.size();
+        }
+        return hits.sum() + " cache hits, " + misses.sum() + " lookups, " + failures.sum() + " failed, "
+                + cached + " cached, " + executor.getActiveCount() + " active, " + executor.getQueue().size() + " queued";
+    }
+
+    // Removes expired entries; the LRU bound alone would keep them until pushed out
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            for (Iterator<CacheEntry> it = cache.values().iterator(); it.hasNext(); ) {
+                if (now >= it.next().expiresAt) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void fail(String key, CompletableFuture<String> result, Exception e) {
+        failures.increment();
+        synchronized (cache) {
+            CacheEntry entry = cache.get(key);
+            if (entry != null && entry.result == result) {
+                cache.remove(key); // don't cache failures; the next lookup tries again
+            }
+        }
+        result.completeExceptionally(e);
+    }
+
+    private String query(String domain, Listener listener) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(server, port), timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+
+            // Send domain query
+            OutputStream out = socket.getOutputStream();
+            out.write((domain + "\r\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            // Receive the response, passing each piece on as it arrives
+            StringBuilder response = new StringBuilder();
+            Reader in = new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8);
+            char[] buffer = new char[4096];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                if (n == 0) {
+                    continue;
+                }
+                String text = new String(buffer, 0, n);
+                response.append(text);
+                if (listener != null) {
+                    listener.onText(text);
+                }
+            }
+            return response.toString();
+        }
+    }
+}
+
+
+b. WhoisBatch.java
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+// Looks up every domain in a file (one per line) concurrently and prints one line per domain:
+// the registrar if the response names one, otherwise its size.
+//
+//   java -Dwhois.server=localhost -Dwhois.threads=64 WhoisBatch domains.txt
+public class WhoisBatch {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        WhoisClient client = WhoisClient.fromSystemProperties();
+        // Each lookup holds a permit, so no more are submitted than the client can queue
+        int window = Integer.getInteger("whois.queue", 10_000);
+        Semaphore permits = new Semaphore(window);
+        LongAdder failed = new LongAdder();
+        long start = System.nanoTime();
+        int submitted = 0;
+
+        try (BufferedReader in = new BufferedReader(new FileReader(args[0]))) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                String domain = line.trim();
+                if (domain.isEmpty()) {
+                    continue;
+                }
+                permits.acquire();
+                submitted++;
+                client.lookup(domain).whenComplete((text, error) -> {
+                    if (error != null) {
+                        failed.increment();
+                        System.out.println(domain + "\tERROR " + error.getMessage());
+                    } else {
+                        System.out.println(domain + "\t" + summary(text));
+                    }
+                    permits.release();
+                });
+            }
+        }
+        permits.acquire(window); // every permit back: all lookups have finished
+
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        System.out.println(submitted + " domains against " + client.getServer() + " in " + millis + " ms ("
+                + submitted * 1000L / millis + "/s), " + failed.sum() + " failed; " + client.stats());
+        client.close();
+    }
+
+    private static String summary(String text) {
+        for (String line : text.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.regionMatches(true, 0, "Registrar:", 0, 10)) {
+                return trimmed.substring(10).trim();
+            }
+        }
+        return text.length() + " chars";
+    }
+}
+
+
+c. StubWhoisServer.java
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+// Local whois server for testing WhoisClient without the real registry. Answers any domain
+// with a few made-up records, sent in three parts stub.delay ms apart so streaming is visible.
+//
+//   java -Dstub.delay=200 StubWhoisServer [port]      (port 43 needs root; use e.g. 4343)
+public class StubWhoisServer {
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 43;
+        long delay = Long.getLong("stub.delay", 50);
+        ConnectionDispatcher dispatcher = ConnectionDispatcher.fromSystemProperties("whois-stub");
+        SocketProfile profile = SocketProfile.fromSystemProperties();
+
+        try (ServerSocket server = profile.bind(new ServerSocket(), new InetSocketAddress(port), 1024)) {
+            System.out.println("Stub whois server listening on port " + port + " (" + dispatcher + ")");
+            while (true) {
+                Socket socket = server.accept();
+                profile.configure(socket);
+                dispatcher.dispatch(socket, () -> answer(socket, delay));
+            }
+        }
+    }
+
+    private static void answer(Socket socket, long delay) {
+        try (Socket s = socket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            String domain = in.readLine();
+            if (domain == null) {
+                return;
+            }
+            domain = domain.trim().toUpperCase();
+            String[] parts = {
+                "   Domain Name: " + domain + "\r\n   Registry Domain ID: " + Math.abs(domain.hashCode()) + "_DOMAIN\r\n",
+                "   Registrar: Stub Registrar, Inc.\r\n   Creation Date: 1997-09-15T04:00:00Z\r\n",
+                "   Name Server: NS1." + domain + "\r\n>>> Last update of whois database: stub <<<\r\n"
+            };
+            OutputStream out = s.getOutputStream();
+            for (String part : parts) {
+                out.write(part.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                Thread.sleep(delay);
+            }
+        } catch (IOException e) {
+            // client went away
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,6 +1,9 @@
 
 a. MultiThreadedBinaryServer.java
   
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.ServerSocket;
@@ -10,16 +13,19 @@ public class MultiThreadedBinaryServer {
 
     public static void main(String[] args) {
         int port = 12345; // The port number the server will listen on
+        ConnectionDispatcher dispatcher = ConnectionDispatcher.fromSystemProperties("binary");
+        SocketProfile profile = SocketProfile.fromSystemProperties();
 
-        try (ServerSocket serverSocket = new ServerSocket(port)) {
+        try (ServerSocket serverSocket = profile.openServerSocket(port)) {
             System.out.println("Server is listening on port " + port);
 
             while (true) {
                 Socket socket = serverSocket.accept();
+                profile.configure(socket);
                 System.out.println("New client connected");
 
-                // Create a new thread for each client connection
-                new ServerThread(socket).start();
+                // Hand the connection to the configured dispatch strategy
+                dispatcher.dispatch(socket, new ServerThread(socket));
             }
         } catch (IOException ex) {
             System.out.println("Server exception: " + ex.getMessage());
@@ -28,7 +34,8 @@ public class MultiThreadedBinaryServer {
     }
 }
 
-class ServerThread extends Thread {
+class ServerThread implements Runnable {
+    private static final ServerMetrics metrics = ServerMetrics.forServer("binary");
     private Socket socket;
 
     public ServerThread(Socket socket) {
@@ -36,18 +43,42 @@ class ServerThread extends Thread {
     }
 
     public void run() {
-        try (DataOutputStream out = new DataOutputStream(socket.getOutputStream())) {
-            // Send binary data to the client
+        // Closes the socket if the client goes quiet or stops reading (see IdleReaper)
+        IdleReaper.Deadlines deadlines = IdleReaper.shared().register(socket);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(deadlines.track(metrics.countIn(socket.getInputStream()))));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(deadlines.track(metrics.countOut(socket.getOutputStream()))))) {
+            FrameEncoder encoder = new FrameEncoder(true);
+            FrameDecoder decoder = new FrameDecoder();
+            Frame frame = new Frame(); // reused for every frame read on this connection
+
+            // Send binary data to the client as a single framed message
             byte[] binaryData = {1, 2, 3, 4, 5}; // Example binary data
-            out.write(binaryData);
+            encoder.write(out, Frame.TYPE_DATA, binaryData, 0, binaryData.length);
             out.flush();
 
             System.out.println("Sent binary data to client");
 
+            // Then answer every frame the client pipelines on this connection, in order.
+            // Replies are only flushed once no more input is buffered, so a burst of
+            // requests is answered with a burst of replies instead of one packet each.
+            int frames = 0;
+            while (decoder.read(in, frame) && frame.type() != Frame.TYPE_CLOSE) {
+                encoder.write(out, frame.type(), frame.buffer().array(), frame.offset(), frame.length());
+                frames++;
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+            out.flush();
+
+            System.out.println("Echoed " + frames + " frames");
+
         } catch (IOException ex) {
+            metrics.error();
             System.out.println("ServerThread exception: " + ex.getMessage());
             ex.printStackTrace();
         } finally {
+            deadlines.cancel();
             try {
                 socket.close();
                 System.out.println("Client disconnected");
@@ -61,7 +92,10 @@ class ServerThread extends Thread {
 
 b. BinaryDataClient.java
   
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.Socket;
 
@@ -70,22 +104,323 @@ public class BinaryDataClient {
     public static void main(String[] args) {
         String hostname = "localhost";
         int port = 12345;
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10; // frames to pipeline
 
         try (Socket socket = new Socket(hostname, port)) {
-            DataInputStream input = new DataInputStream(socket.getInputStream());
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            FrameEncoder encoder = new FrameEncoder(true);
+            FrameDecoder decoder = new FrameDecoder();
+            Frame frame = new Frame();
 
-            // Read binary data from the server
-            byte[] binaryData = new byte[5];
-            input.readFully(binaryData);
+            // Read binary data from the server; the frame header says how long it is
+            if (!decoder.read(input, frame)) {
+                System.out.println("Server closed the connection");
+                return;
+            }
 
             System.out.println("Received binary data from server:");
-            for (byte b : binaryData) {
-                System.out.print(b + " ");
+            for (int i = 0; i < frame.length(); i++) {
+                System.out.print(frame.get(i) + " ");
+            }
+            System.out.println();
+
+            // Pipeline many frames over the same connection without waiting for replies,
+            // from a separate thread so a full socket buffer cannot deadlock both sides
+            Thread writer = new Thread(() -> {
+                try {
+                    byte[] record = new byte[8];
+                    for (int i = 0; i < count; i++) {
+                        record[7] = (byte) i;
+                        encoder.write(output, Frame.TYPE_DATA, record, 0, record.length);
+                    }
+                    encoder.write(output, Frame.TYPE_CLOSE, record, 0, 0);
+                    output.flush();
+                } catch (IOException ex) {
+                    System.out.println("Writer exception: " + ex.getMessage());
+                }
+            });
+            writer.start();
+
+            // Replies come back in the order the frames were sent
+            int received = 0;
+            while (received < count && decoder.read(input, frame)) {
+                received++;
             }
+            writer.join();
+            System.out.println("Received " + received + " of " + count + " pipelined replies");
 
         } catch (IOException ex) {
             System.out.println("Client exception: " + ex.getMessage());
             ex.printStackTrace();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
+
+c. Frame.java
+
+import java.nio.ByteBuffer;
+
+// Wire format of one frame:
+//
+//   varint length | type (1 byte) | flags (1 byte) | payload (length bytes) | CRC32C of payload (4 bytes, optional)
+//
+// The length is an unsigned LEB128 varint (1 byte for payloads under 128 bytes). The CRC is
+// present only when FLAG_CHECKSUM is set. A Frame is a reusable view of one decoded frame:
+// the payload is not copied out, it stays in the buffer it was decoded from.
+public class Frame {
+    public static final int TYPE_DATA = 1;
+    public static final int TYPE_CLOSE = 2;
+
+    public static final int FLAG_CHECKSUM = 0x01;
+
+    public static final int MAX_VARINT_BYTES = 5;
+    public static final int DEFAULT_MAX_LENGTH = 16 * 1024 * 1024;
+
+    private int type;
+    private int flags;
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+
+    void set(int type, int flags, ByteBuffer buffer, int offset, int length) {
+        this.type = type;
+        this.flags = flags;
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public int type() {
+        return type;
+    }
+
+    public boolean hasChecksum() {
+        return (flags & FLAG_CHECKSUM) != 0;
+    }
+
+    // The buffer holding the payload, valid until the next decode into this frame
+    // (or, for the ByteBuffer decoder, until the source buffer is compacted)
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public int offset() {
+        return offset;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public byte get(int index) {
+        return buffer.get(offset + index);
+    }
+
+    public void copyTo(byte[] dst, int dstOffset) {
+        buffer.get(offset, dst, dstOffset, length);
+    }
+
+    // Number of bytes a frame with this payload length occupies on the wire
+    public static int encodedLength(int payloadLength, boolean checksum) {
+        return varintLength(payloadLength) + 2 + payloadLength + (checksum ? 4 : 0);
+    }
+
+    static int varintLength(int value) {
+        int bytes = 1;
+        while ((value >>>= 7) != 0) {
+            bytes++;
+        }
+        return bytes;
+    }
+}
+
+d. FrameEncoder.java
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+// Not thread-safe: use one encoder per connection (or per thread)
+public class FrameEncoder {
+    private final boolean checksum;
+    private final CRC32C crc = new CRC32C();
+
+    public FrameEncoder(boolean checksum) {
+        this.checksum = checksum;
+    }
+
+    // Writes one frame to the stream. Nothing is flushed, so callers can pipeline many
+    // frames into a BufferedOutputStream and flush once.
+    public void write(DataOutputStream out, int type, byte[] payload, int offset, int length) throws IOException {
+        writeVarint(out, length);
+        out.writeByte(type);
+        out.writeByte(checksum ? Frame.FLAG_CHECKSUM : 0);
+        out.write(payload, offset, length);
+        if (checksum) {
+            crc.reset();
+            crc.update(payload, offset, length);
+            out.writeInt((int) crc.getValue());
+        }
+    }
+
+    // Appends one frame with payload's remaining bytes to dst, consuming payload.
+    // Throws BufferOverflowException if dst cannot hold the whole frame.
+    public void encode(int type, ByteBuffer payload, ByteBuffer dst) {
+        int length = payload.remaining();
+        if (dst.remaining() < Frame.encodedLength(length, checksum)) {
+            throw new java.nio.BufferOverflowException();
+        }
+        putVarint(dst, length);
+        dst.put((byte) type);
+        dst.put((byte) (checksum ? Frame.FLAG_CHECKSUM : 0));
+        if (checksum) {
+            crc.reset();
+            crc.update(payload.duplicate());
+        }
+        dst.put(payload);
+        if (checksum) {
+            dst.putInt((int) crc.getValue());
+        }
+    }
+
+    static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static void putVarint(ByteBuffer dst, int value) {
+        while ((value & ~0x7F) != 0) {
+            dst.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        dst.put((byte) value);
+    }
+}
+
+e. FrameDecoder.java
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+// Not thread-safe: use one decoder per connection. Decoding into a reused Frame does not
+// allocate; the stream decoder only allocates when a frame is larger than any seen before.
+public class FrameDecoder {
+    private final int maxLength;
+    private final CRC32C crc = new CRC32C();
+    private byte[] array = new byte[256];
+    private ByteBuffer arrayBuffer = ByteBuffer.wrap(array);
+
+    public FrameDecoder() {
+        this(Frame.DEFAULT_MAX_LENGTH);
+    }
+
+    public FrameDecoder(int maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    // Reads the next frame from a blocking stream. Returns false on a clean end of
+    // stream between frames; a stream that ends inside a frame throws EOFException.
+    public boolean read(DataInputStream in, Frame frame) throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return false;
+        }
+        int length = first & 0x7F;
+        int shift = 7;
+        int b = first;
+        while ((b & 0x80) != 0) {
+            if (shift > 28) {
+                throw new StreamCorruptedException("Malformed frame length");
+            }
+            b = in.readUnsignedByte();
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        checkLength(length);
+
+        int type = in.readUnsignedByte();
+        int flags = in.readUnsignedByte();
+        if (array.length < length) {
+            array = new byte[Math.max(length, array.length * 2)];
+            arrayBuffer = ByteBuffer.wrap(array);
+        }
+        in.readFully(array, 0, length);
+
+        if ((flags & Frame.FLAG_CHECKSUM) != 0) {
+            crc.reset();
+            crc.update(array, 0, length);
+            verify(in.readInt());
+        }
+        frame.set(type, flags, arrayBuffer, 0, length);
+        return true;
+    }
+
+    // Decodes the next frame from a buffer in read mode. Returns false, leaving the buffer
+    // untouched, if it does not hold a complete frame yet; otherwise advances past the frame.
+    // The frame's payload points into the buffer itself.
+    public boolean decode(ByteBuffer in, Frame frame) throws IOException {
+        int pos = in.position();
+        int limit = in.limit();
+
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (pos >= limit) {
+                return false;
+            }
+            if (shift > 28) {
+                throw new StreamCorruptedException("Malformed frame length");
+            }
+            byte b = in.get(pos++);
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        checkLength(length);
+
+        if (limit - pos < 2) {
+            return false;
+        }
+        int type = in.get(pos) & 0xFF;
+        int flags = in.get(pos + 1) & 0xFF;
+        pos += 2;
+
+        int trailer = (flags & Frame.FLAG_CHECKSUM) != 0 ? 4 : 0;
+        if (limit - pos < length + trailer) {
+            return false;
+        }
+
+        if (trailer != 0) {
+            crc.reset();
+            in.position(pos).limit(pos + length);
+            crc.update(in);
+            in.limit(limit);
+            verify(in.getInt(pos + length));
+        }
+        frame.set(type, flags, in, pos, length);
+        in.position(pos + length + trailer);
+        return true;
+    }
+
+    private void checkLength(int length) throws IOException {
+        if (length < 0 || length > maxLength) {
+            throw new StreamCorruptedException("Frame length " + length + " exceeds limit " + maxLength);
+        }
+    }
+
+    private void verify(int expected) throws IOException {
+        if ((int) crc.getValue() != expected) {
+            throw new StreamCorruptedException("Frame checksum mismatch");
         }
     }
 }
@@ -3,30 +3,38 @@ a. simplechatserver.java
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
 
+// Line protocol: plain lines go to the "lobby" room every client starts in; commands are
+//   /join <room>   /leave <room>   /msg <room> <text>   /rooms
 public class SimpleChatServer {
 
     private static final int PORT = 9000;
-    private static List<ClientHandler> clients = new ArrayList<>();
+    private static final int OUTBOX_CAPACITY = 1024; // messages queued per client before it counts as slow
+    // Chat users may only read for hours, so idle.read does not apply; -Dchat.idle.read opts back in
+    private static final long READ_IDLE_MILLIS = Long.getLong("chat.idle.read", 0);
+    private static final String LOBBY = "lobby";
+    private static ChatRooms rooms = new ChatRooms(Integer.getInteger("chat.shards", Runtime.getRuntime().availableProcessors()));
     private static int nextUserId = 1;
+    private static ConnectionDispatcher dispatcher = ConnectionDispatcher.fromSystemProperties("chat");
+    private static SocketProfile profile = SocketProfile.fromSystemProperties();
 
     public static void main(String[] args) {
-        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
+        try (ServerSocket serverSocket = profile.openServerSocket(PORT)) {
             System.out.println("Server is running on port " + PORT);
 
             while (true) {
                 Socket clientSocket = serverSocket.accept();
+                profile.configure(clientSocket);
                 System.out.println("New client connected");
 
                 ClientHandler clientHandler = new ClientHandler(clientSocket, "User" + nextUserId);
                 nextUserId++;
-                clients.add(clientHandler);
-                new Thread(clientHandler).start();
+                dispatcher.dispatch(clientSocket, clientHandler);
             }
         } catch (IOException e) {
             e.printStackTrace();
@@ -35,56 +43,97 @@ public class SimpleChatServer {
 
     static class ClientHandler implements Runnable {
         private Socket clientSocket;
-        private PrintWriter out;
         private BufferedReader in;
         private String username;
+        private Set<String> joined = new HashSet<>(); // rooms this client is in, used only by its handler thread
+        // Clients that stop reading are closed after -Didle.write ms, silent ones only with -Dchat.idle.read
+        private IdleReaper.Deadlines deadlines;
+
+        // Everything sent to this client goes through its outbox, drained on the dispatcher's
+        // writer executor, so a slow reader only ever fills its own queue and never blocks a sender
+        private BroadcastHub.SocketOutbox outbox;
 
         public ClientHandler(Socket socket, String username) {
             this.clientSocket = socket;
             this.username = username;
-            try {
-                out = new PrintWriter(clientSocket.getOutputStream(), true);
-                in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
         }
 
         @Override
         public void run() {
+            // Deadlines start here rather than at accept, so time spent waiting in the
+            // dispatcher's queue cannot get the client reaped before it is served
+            deadlines = IdleReaper.shared().register(clientSocket, READ_IDLE_MILLIS);
             try {
+                outbox = new BroadcastHub.SocketOutbox(clientSocket, OUTBOX_CAPACITY,
+                        BroadcastHub.SlowConsumerPolicy.DISCONNECT, deadlines, dispatcher.writers());
+                in = new BufferedReader(new InputStreamReader(deadlines.track(clientSocket.getInputStream()), StandardCharsets.UTF_8));
+                join(LOBBY);
+
                 // Notify client of their username
-                out.println("You are connected as: " + username);
+                outbox.offer(BroadcastHub.encode("You are connected as: " + username));
 
                 String message;
                 while ((message = in.readLine()) != null) {
-                    System.out.println(username + ": " + message);
-                    broadcastMessage(username + ": " + message, this);
+                    if (message.startsWith("/")) {
+                        handleCommand(message);
+                    } else {
+                        System.out.println(username + ": " + message);
+                        rooms.publish(LOBBY, username + ": " + message, outbox);
+                    }
                 }
             } catch (IOException e) {
                 e.printStackTrace();
             } finally {
+                deadlines.cancel();
+                for (String room : joined) {
+                    rooms.leave(room, outbox);
+                }
+                if (outbox != null) {
+                    outbox.close();
+                }
                 try {
-                    in.close();
-                    out.close();
+                    if (in != null) {
+                        in.close();
+                    }
                     clientSocket.close();
-                    clients.remove(this);
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
             }
         }
 
-        private void broadcastMessage(String message, ClientHandler sender) {
-            for (ClientHandler client : clients) {
-                if (client != sender) {
-                    client.sendMessage(message);
+        private void handleCommand(String line) {
+            String[] parts = line.split(" ", 3);
+            String command = parts[0];
+            String room = parts.length > 1 ? parts[1] : "";
+
+            if (command.equals("/rooms")) {
+                for (String stats : rooms.stats()) {
+                    outbox.offer(BroadcastHub.encode(stats));
+                }
+            } else if (room.isEmpty()) {
+                outbox.offer(BroadcastHub.encode("Missing room name: " + line));
+            } else if (command.equals("/join")) {
+                join(room);
+            } else if (command.equals("/leave")) {
+                if (joined.remove(room)) {
+                    rooms.leave(room, outbox);
+                }
+            } else if (command.equals("/msg") && parts.length == 3) {
+                if (joined.contains(room)) {
+                    rooms.publish(room, "[" + room + "] " + username + ": " + parts[2], outbox);
+                } else {
+                    outbox.offer(BroadcastHub.encode("Not in room " + room));
                 }
+            } else {
+                outbox.offer(BroadcastHub.encode("Unknown command: " + line));
             }
         }
 
-        private void sendMessage(String message) {
-            out.println(message);
+        private void join(String room) {
+            if (joined.add(room)) {
+                rooms.join(room, outbox);
+            }
         }
     }
 }
@@ -102,8 +151,10 @@ import java.awt.event.ActionListener;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 
 public class SimpleNetworkClientGUI extends JFrame {
 
@@ -178,8 +229,9 @@ public class SimpleNetworkClientGUI extends JFrame {
 
         try {
             socket = new Socket(serverAddress, port);
-            out = new PrintWriter(socket.getOutputStream(), true);
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            // UTF-8 both ways, as BroadcastHub encodes it, whatever the platform default
+            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
             appendToChatArea("Connected to server at " + serverAddress + ":" + port);
 
             // Start a thread to continuously read messages from server
@@ -234,3 +286,348 @@ public class SimpleNetworkClientGUI extends JFrame {
         });
     }
 }
+
+
+c. BroadcastHub.java
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fan-out of chat lines to every member. A message is encoded to bytes once and the same
+// array is handed to every recipient's outbox; senders never write to a socket themselves.
+public class BroadcastHub {
+
+    public enum SlowConsumerPolicy {
+        DISCONNECT, // outbox full: close the slow client
+        DROP_OLDEST // outbox full: discard its oldest queued messages and keep the newest
+    }
+
+    private final Set<Outbox> members = ConcurrentHashMap.newKeySet();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public void join(Outbox member) {
+        members.add(member);
+    }
+
+    public void leave(Outbox member) {
+        members.remove(member);
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    public static byte[] encode(String line) {
+        return (line + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    public int broadcast(String line, Outbox sender) {
+        return broadcast(encode(line), sender);
+    }
+
+    // Offers the (already encoded, never modified afterwards) message to every member except
+    // the sender. Returns how many members accepted it.
+    public int broadcast(byte[] message, Outbox sender) {
+        int count = 0;
+        for (Outbox member : members) {
+            if (member == sender) {
+                continue;
+            }
+            if (member.offer(message)) {
+                count++;
+            } else {
+                dropped.increment();
+            }
+        }
+        delivered.add(count);
+        return count;
+    }
+
+    public long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    // Outbound side of one member
+    public abstract static class Outbox {
+        protected final LongAdder dropped = new LongAdder();
+
+        // Queues the message without blocking; false if it was not accepted
+        public abstract boolean offer(byte[] message);
+
+        public abstract void close();
+
+        public long getDroppedCount() {
+            return dropped.sum();
+        }
+    }
+
+    // Outbox for a blocking Socket: a bounded lock-free queue drained by a task on a shared
+    // writer executor (see ConnectionDispatcher.writers()), at most one task per outbox at a
+    // time. Whatever has piled up is written in one go through a buffered stream and flushed once.
+    public static final class SocketOutbox extends Outbox {
+        private final Socket socket;
+        private final OutputStream out;
+        private final int capacity;
+        private final SlowConsumerPolicy policy;
+        private final Executor writers;
+        private final Queue<byte[]> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+
+        public SocketOutbox(Socket socket, int capacity, SlowConsumerPolicy policy, Executor writers) throws IOException {
+            this(socket, capacity, policy, null, writers);
+        }
+
+        // With deadlines, a write that blocks for too long gets the socket closed by the IdleReaper,
+        // which also frees the writer thread it was holding
+        public SocketOutbox(Socket socket, int capacity, SlowConsumerPolicy policy, IdleReaper.Deadlines deadlines,
+                            Executor writers) throws IOException {
+            this.socket = socket;
+            OutputStream raw = socket.getOutputStream();
+            this.out = new BufferedOutputStream(deadlines != null ? deadlines.track(raw) : raw, 8192);
+            this.capacity = capacity;
+            this.policy = policy;
+            this.writers = writers;
+        }
+
+        @Override
+        public boolean offer(byte[] message) {
+            if (closed) {
+                return false;
+            }
+            if (size.incrementAndGet() > capacity) {
+                if (policy == SlowConsumerPolicy.DISCONNECT) {
+                    size.decrementAndGet();
+                    close();
+                    return false;
+                }
+                // Make room by discarding the oldest message still waiting
+                if (queue.poll() != null) {
+                    size.decrementAndGet();
+                    dropped.increment();
+                }
+            }
+            queue.add(message);
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    writers.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    close();
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Writes until the queue is empty, then gives the thread back. A message offered after
+        // the last poll() but before draining is cleared is picked up by the re-check.
+        private void drain() {
+            try {
+                do {
+                    byte[] message;
+                    while (!closed && (message = queue.poll()) != null) {
+                        size.decrementAndGet();
+                        out.write(message);
+                    }
+                    if (!closed) {
+                        out.flush();
+                    }
+                    draining.set(false);
+                } while (!closed && !queue.isEmpty() && draining.compareAndSet(false, true));
+            } catch (IOException e) {
+                draining.set(false);
+                close();
+            }
+        }
+
+        // Closing the socket also ends the reader thread blocked on it
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // Outbox for a connection on the NIO Reactor: the connection already buffers what the
+    // socket cannot take, so the outbox only enforces the slow-consumer limit on top of it.
+    public static final class ConnectionOutbox extends Outbox {
+        private final Connection connection;
+        private final int maxPendingBytes;
+        private final SlowConsumerPolicy policy;
+
+        public ConnectionOutbox(Connection connection, int maxPendingBytes, SlowConsumerPolicy policy) {
+            this.connection = connection;
+            this.maxPendingBytes = maxPendingBytes;
+            this.policy = policy;
+        }
+
+        @Override
+        public boolean offer(byte[] message) {
+            if (!connection.isOpen()) {
+                return false;
+            }
+            if (connection.pendingBytes() > maxPendingBytes) {
+                // Bytes already handed to the connection cannot be taken back, so under
+                // DROP_OLDEST the new message is the one dropped
+                if (policy == SlowConsumerPolicy.DISCONNECT) {
+                    connection.close();
+                } else {
+                    dropped.increment();
+                }
+                return false;
+            }
+            connection.write(ByteBuffer.wrap(message));
+            return true;
+        }
+
+        @Override
+        public void close() {
+            connection.close();
+        }
+    }
+}
+
+
+d. ChatRooms.java
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Named chat rooms spread over dispatcher threads. Each room is owned by one shard, chosen
+// by the hash of its name, and every join/leave/publish for that room runs on that shard's
+// thread: messages in one room keep their order while unrelated rooms fan out in parallel.
+// Senders only enqueue; they never do the fan-out themselves.
+public class ChatRooms {
+    private final ExecutorService[] shards;
+    private final ConcurrentMap<String, Room> rooms = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sampler;
+
+    public ChatRooms(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be at least 1: " + shardCount);
+        }
+        shards = new ExecutorService[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            String name = "room-shard-" + i;
+            shards[i] = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, name));
+        }
+
+        // Once a second turn each room's message counter into a messages-per-second figure
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "room-sampler"));
+        sampler.scheduleAtFixedRate(() -> {
+            for (Room room : rooms.values()) {
+                room.sample();
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public void join(String name, BroadcastHub.Outbox member) {
+        shardFor(name).execute(() -> rooms.computeIfAbsent(name, Room::new).members.join(member));
+    }
+
+    public void leave(String name, BroadcastHub.Outbox member) {
+        shardFor(name).execute(() -> {
+            Room room = rooms.get(name);
+            if (room != null) {
+                room.members.leave(member);
+                if (room.members.size() == 0) {
+                    rooms.remove(name); // safe: joins for this room run on this same thread
+                }
+            }
+        });
+    }
+
+    public void publish(String name, String line, BroadcastHub.Outbox sender) {
+        shardFor(name).execute(() -> {
+            Room room = rooms.get(name);
+            if (room != null) {
+                byte[] message = BroadcastHub.encode(line); // encoded once for the whole room
+                room.members.broadcast(message, sender);
+                room.published.increment();
+                room.bytes.add(message.length);
+            }
+        });
+    }
+
+    // One line per room: members, messages/s over the last second and totals
+    public List<String> stats() {
+        List<String> lines = new ArrayList<>();
+        for (Room room : rooms.values()) {
+            lines.add(room.name + ": members=" + room.members.size()
+                    + " msg/s=" + room.messagesPerSecond
+                    + " published=" + room.published.sum()
+                    + " bytes=" + room.bytes.sum()
+                    + " delivered=" + room.members.getDeliveredCount()
+                    + " dropped=" + room.members.getDroppedCount());
+        }
+        return lines;
+    }
+
+    public void shutdown() {
+        sampler.shutdown();
+        for (ExecutorService shard : shards) {
+            shard.shutdown();
+        }
+    }
+
+    private ExecutorService shardFor(String name) {
+        return shards[Math.floorMod(name.hashCode(), shards.length)];
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    static final class Room {
+        final String name;
+        final BroadcastHub members = new BroadcastHub();
+        final LongAdder published = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        volatile long messagesPerSecond;
+        private long lastPublished; // touched only by the sampler thread
+
+        Room(String name) {
+            this.name = name;
+        }
+
+        void sample() {
+            long now = published.sum();
+            messagesPerSecond = now - lastPublished;
+            lastPublished = now;
+        }
+    }
+}
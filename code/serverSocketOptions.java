@@ -112,3 +112,302 @@ public class SimpleClient {
     }
 }
 
+
+
+e. SocketProfile (SO_RCVBUF, SO_SNDBUF, TCP_NODELAY, SO_KEEPALIVE, SO_LINGER, backlog, SO_REUSEPORT)
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.Set;
+
+// The socket options a server applies, in one place instead of hard-coded per server as in the
+// examples above. Anything a profile leaves unset keeps the server's own default (and the OS
+// default below that), so an empty profile changes nothing.
+//
+// Profiles live in a properties file; keys may be prefixed with a profile name, which wins over
+// the unprefixed key, so one file can hold several profiles:
+//
+//   backlog=1024
+//   bulk.receiveBuffer=1m
+//   bulk.sendBuffer=1m
+//   interactive.tcpNoDelay=true
+//
+//   java -Dsocket.config=socket-profiles.properties -Dsocket.profile=bulk MultiThreadedBinaryServer
+//
+// -Dsocket.<key> overrides the file for a single run. Keys: receiveBuffer, sendBuffer (bytes,
+// k/m suffixes allowed), tcpNoDelay, keepAlive, linger (seconds, -1 = off), backlog,
+// reuseAddress, reusePort (ignored where the OS has no SO_REUSEPORT).
+public final class SocketProfile {
+    static final String[] KEYS = {"receiveBuffer", "sendBuffer", "tcpNoDelay", "keepAlive", "linger", "backlog", "reuseAddress", "reusePort"};
+
+    private final Integer receiveBuffer;
+    private final Integer sendBuffer;
+    private final Boolean tcpNoDelay;
+    private final Boolean keepAlive;
+    private final Integer linger;
+    private final Integer backlog;
+    private final Boolean reuseAddress;
+    private final Boolean reusePort;
+
+    private SocketProfile(Properties properties, String profile) {
+        receiveBuffer = size(value(properties, profile, "receiveBuffer"));
+        sendBuffer = size(value(properties, profile, "sendBuffer"));
+        tcpNoDelay = bool(value(properties, profile, "tcpNoDelay"));
+        keepAlive = bool(value(properties, profile, "keepAlive"));
+        String lingerValue = value(properties, profile, "linger");
+        linger = lingerValue == null ? null : Integer.valueOf(lingerValue);
+        backlog = size(value(properties, profile, "backlog"));
+        reuseAddress = bool(value(properties, profile, "reuseAddress"));
+        reusePort = bool(value(properties, profile, "reusePort"));
+    }
+
+    // Reads profile (or only the unprefixed keys, if profile is null) from already loaded properties
+    public static SocketProfile parse(Properties properties, String profile) {
+        return new SocketProfile(properties, profile);
+    }
+
+    // Profile -Dsocket.profile from the file -Dsocket.config, if any, then -Dsocket.<key> overrides
+    public static SocketProfile fromSystemProperties() {
+        Properties properties = new Properties();
+        String config = System.getProperty("socket.config");
+        if (config != null) {
+            try (InputStream in = Files.newInputStream(Paths.get(config))) {
+                properties.load(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read socket.config " + config, e);
+            }
+        }
+        String profile = System.getProperty("socket.profile");
+        for (String key : KEYS) {
+            String override = System.getProperty("socket." + key);
+            if (override != null) {
+                properties.setProperty(profile != null ? profile + "." + key : key, override);
+            }
+        }
+        return new SocketProfile(properties, profile);
+    }
+
+    // A bound ServerSocket, as new ServerSocket(port) would give (backlog 50 unless the profile
+    // says otherwise), with the listening options applied before bind so they are inherited by
+    // every accepted socket
+    public ServerSocket openServerSocket(int port) throws IOException {
+        return bind(new ServerSocket(), new InetSocketAddress(port), 50);
+    }
+
+    // For server sockets that come unbound from a factory, e.g. SSLServerSocketFactory.createServerSocket()
+    public <S extends ServerSocket> S bind(S server, InetSocketAddress address, int defaultBacklog) throws IOException {
+        try {
+            configureListener(server.supportedOptions(), server::setOption);
+            server.bind(address, backlog(defaultBacklog));
+            return server;
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+    }
+
+    public ServerSocketChannel bind(ServerSocketChannel server, InetSocketAddress address, int defaultBacklog) throws IOException {
+        configureListener(server.supportedOptions(), server::setOption);
+        return server.bind(address, backlog(defaultBacklog));
+    }
+
+    // Per-connection options, for accepted sockets and for clients before they connect
+    public void configure(Socket socket) throws IOException {
+        configureConnection(socket.supportedOptions(), socket::setOption);
+    }
+
+    public void configure(SocketChannel channel) throws IOException {
+        configureConnection(channel.supportedOptions(), channel::setOption);
+    }
+
+    public int backlog(int defaultBacklog) {
+        return backlog != null ? backlog : defaultBacklog;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("SocketProfile[");
+        append(text, "receiveBuffer", receiveBuffer);
+        append(text, "sendBuffer", sendBuffer);
+        append(text, "tcpNoDelay", tcpNoDelay);
+        append(text, "keepAlive", keepAlive);
+        append(text, "linger", linger);
+        append(text, "backlog", backlog);
+        append(text, "reuseAddress", reuseAddress);
+        append(text, "reusePort", reusePort);
+        return text.append(']').toString();
+    }
+
+    // Socket, ServerSocket and the channels all have setOption, but share no interface for it
+    private interface Setter {
+        <T> void set(SocketOption<T> option, T value) throws IOException;
+    }
+
+    private void configureListener(Set<SocketOption<?>> supported, Setter setter) throws IOException {
+        // SO_RCVBUF has to be set before bind/connect for a window above 64 KB to be negotiated
+        set(supported, setter, StandardSocketOptions.SO_RCVBUF, receiveBuffer);
+        set(supported, setter, StandardSocketOptions.SO_REUSEADDR, reuseAddress);
+        set(supported, setter, StandardSocketOptions.SO_REUSEPORT, reusePort);
+    }
+
+    private void configureConnection(Set<SocketOption<?>> supported, Setter setter) throws IOException {
+        set(supported, setter, StandardSocketOptions.SO_RCVBUF, receiveBuffer);
+        set(supported, setter, StandardSocketOptions.SO_SNDBUF, sendBuffer);
+        set(supported, setter, StandardSocketOptions.TCP_NODELAY, tcpNoDelay);
+        set(supported, setter, StandardSocketOptions.SO_KEEPALIVE, keepAlive);
+        set(supported, setter, StandardSocketOptions.SO_LINGER, linger);
+    }
+
+    private static <T> void set(Set<SocketOption<?>> supported, Setter setter, SocketOption<T> option, T value) throws IOException {
+        if (value != null && supported.contains(option)) {
+            setter.set(option, value);
+        }
+    }
+
+    private static String value(Properties properties, String profile, String key) {
+        String value = profile != null ? properties.getProperty(profile + "." + key) : null;
+        if (value == null) {
+            value = properties.getProperty(key);
+        }
+        // "default" lets a profile, or a sweep, explicitly keep the server's own setting
+        return value == null || value.trim().equalsIgnoreCase("default") ? null : value.trim();
+    }
+
+    private static Integer size(String value) {
+        if (value == null) {
+            return null;
+        }
+        String lower = value.toLowerCase();
+        if (lower.endsWith("k")) {
+            return Integer.parseInt(lower.substring(0, lower.length() - 1)) * 1024;
+        }
+        if (lower.endsWith("m")) {
+            return Integer.parseInt(lower.substring(0, lower.length() - 1)) * 1024 * 1024;
+        }
+        return Integer.valueOf(lower);
+    }
+
+    private static Boolean bool(String value) {
+        return value == null ? null : Boolean.valueOf(value);
+    }
+
+    private static void append(StringBuilder text, String key, Object value) {
+        if (value != null) {
+            text.append(text.charAt(text.length() - 1) == '[' ? "" : ", ").append(key).append('=').append(value);
+        }
+    }
+}
+
+
+f. SocketSweep (load test across a matrix of socket options)
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+// Runs LoadGenerator once for every combination of the socket options listed in -Dsweep.<key>
+// (any SocketProfile key, comma-separated values, "default" for the OS setting) and prints
+// throughput and latency per combination, so buffer sizes can be picked from measurements.
+//
+// Without arguments each run gets a fresh NonBlockingServer echo reactor on the loopback
+// interface, configured with the same profile as the client. With host and port it loads that
+// server instead, and only the client side follows the profile.
+//
+//   java -Dsweep.receiveBuffer=default,64k,256k,1m -Dsweep.tcpNoDelay=true,false \
+//        -Dload.connections=50 -Dload.depth=8 -Dload.size=4096 -Dload.duration=5 SocketSweep
+public class SocketSweep {
+    public static void main(String[] args) throws Exception {
+        List<String> keys = new ArrayList<>();
+        List<String[]> values = new ArrayList<>();
+        for (String key : SocketProfile.KEYS) {
+            String list = System.getProperty("sweep." + key);
+            if (list != null) {
+                keys.add(key);
+                values.add(list.split(","));
+            }
+        }
+        if (keys.isEmpty()) {
+            keys.add("receiveBuffer");
+            values.add(new String[] {"default", "64k", "256k", "1m"});
+            keys.add("tcpNoDelay");
+            values.add(new String[] {"true", "false"});
+        }
+        int selectorThreads = Integer.getInteger("sweep.serverThreads", Runtime.getRuntime().availableProcessors());
+
+        List<String> rows = new ArrayList<>();
+        int[] choice = new int[keys.size()]; // odometer over the value lists
+        do {
+            Properties properties = new Properties();
+            StringBuilder row = new StringBuilder();
+            for (int i = 0; i < keys.size(); i++) {
+                String value = values.get(i)[choice[i]].trim();
+                properties.setProperty(keys.get(i), value);
+                row.append(String.format("%-14s", value));
+            }
+            SocketProfile profile = SocketProfile.parse(properties, null);
+            System.out.println("== " + profile);
+
+            Reactor reactor = null;
+            InetSocketAddress target;
+            if (args.length >= 2) {
+                target = new InetSocketAddress(args[0], Integer.parseInt(args[1]));
+            } else {
+                reactor = new Reactor(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), selectorThreads,
+                        NonBlockingServer.EchoHandler::new);
+                reactor.setSocketProfile(profile);
+                reactor.setMetrics(ServerMetrics.forServer("sweep"));
+                reactor.start();
+                target = new InetSocketAddress(InetAddress.getLoopbackAddress(), reactor.getLocalPort());
+            }
+            try {
+                LoadGenerator load = new LoadGenerator(target);
+                load.setSocketProfile(profile);
+                LoadGenerator.Result result = load.run();
+                LatencyHistogram latency = result.latency();
+                row.append(String.format("%12.0f %9d %9d %9d %9d %7d", result.throughput(), latency.percentile(50) / 1000,
+                        latency.percentile(99) / 1000, latency.percentile(99.9) / 1000, latency.max() / 1000, result.errors()));
+            } catch (IOException e) {
+                row.append("failed: ").append(e.getMessage());
+            } finally {
+                if (reactor != null) {
+                    reactor.close();
+                }
+            }
+            rows.add(row.toString());
+        } while (next(choice, values));
+
+        System.out.println();
+        StringBuilder header = new StringBuilder();
+        for (String key : keys) {
+            header.append(String.format("%-14s", key));
+        }
+        System.out.println(header + String.format("%12s %9s %9s %9s %9s %7s", "req/s", "p50 us", "p99 us", "p99.9 us", "max us", "errors"));
+        for (String row : rows) {
+            System.out.println(row);
+        }
+    }
+
+    private static boolean next(int[] choice, List<String[]> values) {
+        for (int i = choice.length - 1; i >= 0; i--) {
+            if (++choice[i] < values.get(i).length) {
+                return true;
+            }
+            choice[i] = 0;
+        }
+        return false;
+    }
+}
@@ -2,17 +2,16 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
 
 public class WhoisGUI extends JFrame {
 
     private JTextField domainField;
     private JTextArea resultArea;
 
+    // Server and cache settings come from -Dwhois.* (see WhoisClient)
+    private final WhoisClient client = WhoisClient.fromSystemProperties();
+    private int currentLookup; // only touched on the event thread
+
     public WhoisGUI() {
         setTitle("Whois Lookup");
         setSize(600, 400);
@@ -70,38 +69,41 @@ public class WhoisGUI extends JFrame {
     }
 
     private void lookupWhois(String domain) {
-        String whoisServer = "whois.verisign-grs.com";
-        int port = 43;
-
-        try (Socket socket = new Socket(whoisServer, port);
-             PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
-
-            // Send domain query
-            out.println(domain);
+        // The lookup runs on WhoisClient's worker threads; the event thread only updates the text
+        int lookup = ++currentLookup;
+        resultArea.setText("");
+        setTitle("Whois Lookup - " + domain + " (looking up...)");
 
-            // Receive and display response
-            StringBuilder response = new StringBuilder();
-            String line;
-            while ((line = in.readLine()) != null) {
-                response.append(line).append("\n");
+        client.lookup(domain, new WhoisClient.Listener() {
+            @Override
+            public void onText(String text) {
+                // Show each part of the response as soon as it arrives
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (lookup == currentLookup) { // ignore a lookup the user has moved on from
+                            resultArea.append(text);
+                        }
+                    }
+                });
             }
-
-            // Update GUI with result and scroll to top
-            SwingUtilities.invokeLater(new Runnable() {
-                @Override
-                public void run() {
-                    resultArea.setText(response.toString());
-                    resultArea.setCaretPosition(0); // Scroll to top
+        }).whenComplete((response, error) -> SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                if (lookup != currentLookup) {
+                    return;
                 }
-            });
-
-        } catch (IOException e) {
-        // Handle specific exceptions or provide user feedback
-        JOptionPane.showMessageDialog(this, "Error performing Whois lookup:\n" + e.getMessage(),
-                "Error", JOptionPane.ERROR_MESSAGE);
-        e.printStackTrace(); // For debugging, log the exception
-    }
+                setTitle("Whois Lookup - " + domain);
+                if (error != null) {
+                    // Handle specific exceptions or provide user feedback
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    JOptionPane.showMessageDialog(WhoisGUI.this, "Error performing Whois lookup:\n" + cause.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                resultArea.setCaretPosition(0); // Scroll to top
+            }
+        }));
     }
 
     public static void main(String[] args) {